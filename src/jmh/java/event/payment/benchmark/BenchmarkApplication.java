@@ -0,0 +1,21 @@
+package event.payment.benchmark;
+
+import event.payment.PaymentSrvcApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    // Boots the service on the in-memory H2 test profile, on a random port and without request logging noise
+    static ConfigurableApplicationContext start(String... properties) {
+
+        return new SpringApplicationBuilder(PaymentSrvcApplication.class)
+                .profiles("test")
+                .properties("server.port=0", "logging.level.root=WARN", "spring.main.banner-mode=off")
+                .properties(properties)
+                .run();
+    }
+}
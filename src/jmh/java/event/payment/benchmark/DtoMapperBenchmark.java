@@ -0,0 +1,70 @@
+package event.payment.benchmark;
+
+import event.payment.model.Payment;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentType;
+import event.payment.model.PaymentView;
+import event.payment.web.dto.PaymentResponse;
+import event.payment.web.mapper.DtoMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DtoMapperBenchmark {
+
+    private Payment payment;
+
+    private PaymentView paymentView;
+
+    @Setup
+    public void setUp() {
+
+        payment = Payment.builder()
+                .id(UUID.randomUUID())
+                .eventId(UUID.randomUUID())
+                .userId(UUID.randomUUID())
+                .username("benchmarkUser")
+                .eventName("Benchmark Event")
+                .amount(BigDecimal.valueOf(15))
+                .type(PaymentType.SINGLE)
+                .status(PaymentStatus.PENDING)
+                .createdOn(LocalDateTime.now())
+                .updatedOn(LocalDateTime.now())
+                .version(0L)
+                .build();
+
+        paymentView = PaymentView.builder()
+                .id(payment.getId())
+                .eventId(payment.getEventId())
+                .userId(payment.getUserId())
+                .username(payment.getUsername())
+                .eventName(payment.getEventName())
+                .amount(payment.getAmount())
+                .type(payment.getType())
+                .status(payment.getStatus())
+                .createdOn(payment.getCreatedOn())
+                .build();
+    }
+
+    @Benchmark
+    public PaymentResponse fromEntity() {
+        return DtoMapper.from(payment);
+    }
+
+    @Benchmark
+    public PaymentResponse fromView() {
+        return DtoMapper.from(paymentView);
+    }
+}
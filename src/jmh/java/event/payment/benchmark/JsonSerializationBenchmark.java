@@ -0,0 +1,59 @@
+package event.payment.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentType;
+import event.payment.web.dto.PaymentResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonSerializationBenchmark {
+
+    @Param({"10", "1000"})
+    private int size;
+
+    private List<PaymentResponse> responses;
+
+    private ObjectWriter writer;
+
+    @Setup
+    public void setUp() {
+
+        UUID eventId = UUID.randomUUID();
+        responses = IntStream.range(0, size)
+                .mapToObj(i -> PaymentResponse.builder()
+                        .eventId(eventId)
+                        .userId(UUID.randomUUID())
+                        .username("user" + i)
+                        .eventName("Benchmark Event")
+                        .amount(BigDecimal.valueOf(i))
+                        .type(PaymentType.SINGLE)
+                        .status(i % 2 == 0 ? PaymentStatus.PAID : PaymentStatus.PENDING)
+                        .build())
+                .toList();
+
+        // Same modules and defaults as the ObjectMapper Spring Boot configures for the controllers
+        writer = Jackson2ObjectMapperBuilder.json().build().writerFor(List.class);
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws Exception {
+        return writer.writeValueAsBytes(responses);
+    }
+}
@@ -0,0 +1,138 @@
+package event.payment.benchmark;
+
+import event.payment.model.UuidV7;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Insert throughput into a payment-shaped table with a BINARY(16) primary key, random (v4) versus time-ordered (v7)
+// ids, after prefilling `rows` rows. On MySQL the trial also prints the table's data and index size. Point it at a
+// scratch schema through -jvmArgsAppend with -Dbenchmark.jdbc.url, -Dbenchmark.jdbc.user and -Dbenchmark.jdbc.password;
+// the default in-memory H2 has no page splits to show.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PaymentIdBenchmark {
+
+    private static final int BATCH = 1_000;
+
+    @Param({"RANDOM", "UUID_V7"})
+    private String ids;
+
+    @Param({"1000000"})
+    private int rows;
+
+    private Connection connection;
+
+    private Supplier<UUID> idSupplier;
+
+    private UUID eventId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+
+        connection = DriverManager.getConnection(
+                System.getProperty("benchmark.jdbc.url", "jdbc:h2:mem:payment_id_benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1"),
+                System.getProperty("benchmark.jdbc.user", "sa"),
+                System.getProperty("benchmark.jdbc.password", ""));
+        connection.setAutoCommit(false);
+        idSupplier = "RANDOM".equals(ids) ? UUID::randomUUID : UuidV7::next;
+        eventId = UUID.randomUUID();
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS payment_id_benchmark");
+            statement.execute("""
+                    CREATE TABLE payment_id_benchmark (
+                        id         BINARY(16)     NOT NULL PRIMARY KEY,
+                        event_id   BINARY(16)     NOT NULL,
+                        user_id    BINARY(16)     NOT NULL,
+                        amount     DECIMAL(38, 2) NOT NULL,
+                        created_on TIMESTAMP(6)   NOT NULL
+                    )
+                    """);
+            statement.execute("CREATE INDEX ix_payment_id_benchmark_event ON payment_id_benchmark (event_id, created_on)");
+        }
+        connection.commit();
+
+        for (int inserted = 0; inserted < rows; inserted += BATCH) {
+            insertBatch();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+
+        if (connection.getMetaData().getDatabaseProductName().equalsIgnoreCase("MySQL")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE TABLE payment_id_benchmark");
+                try (ResultSet size = statement.executeQuery("""
+                        SELECT data_length, index_length FROM information_schema.tables
+                        WHERE table_schema = DATABASE() AND table_name = 'payment_id_benchmark'
+                        """)) {
+                    size.next();
+                    System.out.printf("%n%s ids: clustered index (data) %d MiB, secondary indexes %d MiB%n",
+                            ids, size.getLong(1) >> 20, size.getLong(2) >> 20);
+                }
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE payment_id_benchmark");
+        }
+        connection.commit();
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insertPayments() throws SQLException {
+        insertBatch();
+    }
+
+    private void insertBatch() throws SQLException {
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO payment_id_benchmark (id, event_id, user_id, amount, created_on) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < BATCH; i++) {
+                insert.setBytes(1, bytes(idSupplier.get()));
+                insert.setBytes(2, bytes(eventId));
+                insert.setBytes(3, bytes(UUID.randomUUID()));
+                insert.setBigDecimal(4, BigDecimal.TEN);
+                insert.setTimestamp(5, now);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+    }
+
+    private static byte[] bytes(UUID id) {
+
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+}
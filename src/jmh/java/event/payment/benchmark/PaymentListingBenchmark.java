@@ -0,0 +1,101 @@
+package event.payment.benchmark;
+
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentType;
+import event.payment.service.PaymentService;
+import event.payment.web.dto.PaymentRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PaymentListingBenchmark {
+
+    @Param({"100", "1000"})
+    private int payments;
+
+    private ConfigurableApplicationContext context;
+
+    private CacheManager cacheManager;
+
+    private MockMvc mockMvc;
+
+    private UUID eventId;
+
+    @Setup
+    public void setUp() {
+
+        context = BenchmarkApplication.start();
+        cacheManager = context.getBean(CacheManager.class);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+        eventId = UUID.randomUUID();
+
+        List<PaymentRequest> requests = IntStream.range(0, payments)
+                .mapToObj(i -> PaymentRequest.builder()
+                        .eventId(eventId)
+                        .userId(UUID.randomUUID())
+                        .username("user" + i)
+                        .amount(BigDecimal.valueOf(i))
+                        .type(PaymentType.SINGLE)
+                        .status(PaymentStatus.PENDING)
+                        .build())
+                .toList();
+        context.getBean(PaymentService.class).upsertBatch(requests);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int listByEventCached() throws Exception {
+        return listByEvent();
+    }
+
+    @Benchmark
+    public int listByEventUncached() throws Exception {
+
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        return listByEvent();
+    }
+
+    @Benchmark
+    public int scrollFirstSliceByEvent() throws Exception {
+
+        return mockMvc.perform(get("/api/v1/payments/event/{eventId}/scroll", eventId).param("size", "50"))
+                .andReturn()
+                .getResponse()
+                .getContentLength();
+    }
+
+    private int listByEvent() throws Exception {
+
+        return mockMvc.perform(get("/api/v1/payments/event/{eventId}", eventId))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray()
+                .length;
+    }
+}
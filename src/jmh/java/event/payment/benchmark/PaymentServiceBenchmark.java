@@ -0,0 +1,75 @@
+package event.payment.benchmark;
+
+import event.payment.model.Payment;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentType;
+import event.payment.service.PaymentService;
+import event.payment.web.dto.PaymentRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PaymentServiceBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    private PaymentService paymentService;
+
+    private UUID eventId;
+
+    private UUID existingUserId;
+
+    private boolean paid;
+
+    @Setup
+    public void setUp() {
+
+        context = BenchmarkApplication.start();
+        paymentService = context.getBean(PaymentService.class);
+        eventId = UUID.randomUUID();
+        existingUserId = UUID.randomUUID();
+        paymentService.upsertPayment(request(existingUserId, PaymentStatus.PENDING));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Payment upsertNewPayment() {
+        return paymentService.upsertPayment(request(UUID.randomUUID(), PaymentStatus.PENDING));
+    }
+
+    @Benchmark
+    public Payment upsertExistingPayment() {
+
+        paid = !paid;
+        return paymentService.upsertPayment(request(existingUserId, paid ? PaymentStatus.PAID : PaymentStatus.PENDING));
+    }
+
+    private PaymentRequest request(UUID userId, PaymentStatus status) {
+
+        return PaymentRequest.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .username("benchmarkUser")
+                .amount(BigDecimal.TEN)
+                .type(PaymentType.SINGLE)
+                .status(status)
+                .build();
+    }
+}
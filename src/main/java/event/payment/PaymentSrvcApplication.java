@@ -2,8 +2,12 @@ package event.payment;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
-@SpringBootApplication
+// A ConnectionFactory bean would switch off the JDBC DataSource that JPA needs; see ReactiveConfig
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@ConfigurationPropertiesScan
 public class PaymentSrvcApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,46 @@
+package event.payment.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.Collection;
+import java.util.List;
+
+// Caching runs outside the transaction, so a hit never opens one and evictions happen after commit
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+public class CacheConfig {
+
+    public static final String PAYMENTS_BY_EVENT = "paymentsByEvent";
+    public static final String PAYMENTS_BY_USER = "paymentsByUser";
+    public static final String PAYMENT = "payment";
+
+    // The time source in-memory expiry is measured with, so tests can move it instead of sleeping
+    @Bean
+    public Ticker ticker() {
+        return Ticker.systemTicker();
+    }
+
+    @Bean
+    public CacheManager cacheManager(PaymentProperties paymentProperties, Ticker ticker) {
+
+        PaymentProperties.Cache cache = paymentProperties.getCache();
+
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumWeight(cache.getMaximumRows())
+                .weigher((key, value) -> value instanceof Collection<?> rows ? Math.max(rows.size(), 1) : 1)
+                .expireAfterWrite(cache.getTimeToLive())
+                .ticker(ticker)
+                .recordStats());
+        cacheManager.setCacheNames(List.of(PAYMENTS_BY_EVENT, PAYMENTS_BY_USER, PAYMENT));
+
+        return cacheManager;
+    }
+}
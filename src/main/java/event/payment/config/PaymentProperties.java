@@ -0,0 +1,169 @@
+package event.payment.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "payment")
+public class PaymentProperties {
+
+    private Batch batch = new Batch();
+
+    private Listing listing = new Listing();
+
+    private Lookup lookup = new Lookup();
+
+    private Cache cache = new Cache();
+
+    private Retry retry = new Retry();
+
+    private WriteBehind writeBehind = new WriteBehind();
+
+    private Outbox outbox = new Outbox();
+
+    private Idempotency idempotency = new Idempotency();
+
+    private Recurring recurring = new Recurring();
+
+    private Archive archive = new Archive();
+
+    private Replica replica = new Replica();
+
+    @Data
+    public static class Batch {
+
+        // Keep in line with spring.jpa.properties.hibernate.jdbc.batch_size
+        private int chunkSize = 500;
+
+        // Items in one batch request; the whole batch is one transaction holding a row lock per payment
+        private int maxItems = 10_000;
+    }
+
+    @Data
+    public static class Listing {
+
+        private int maxPageSize = 500;
+    }
+
+    @Data
+    public static class Lookup {
+
+        // Users, events and payments together in one bulk lookup
+        private int maxKeys = 1000;
+
+        // Keys per IN list, so each statement stays within the database's parameter and plan limits
+        private int chunkSize = 500;
+    }
+
+    @Data
+    public static class Cache {
+
+        // Cached lists are weighed by their number of payments
+        private long maximumRows = 100_000;
+
+        private Duration timeToLive = Duration.ofSeconds(60);
+    }
+
+    @Data
+    public static class Retry {
+
+        // Attempts for a status change that loses an optimistic-lock race, including the first one
+        private int maxAttempts = 3;
+
+        private Duration backoff = Duration.ofMillis(20);
+    }
+
+    @Data
+    public static class WriteBehind {
+
+        // Status toggles are coalesced in memory and written in batches instead of one transaction each
+        private boolean enabled = false;
+
+        private Duration flushInterval = Duration.ofMillis(200);
+
+        // Pending payments that trigger a flush before the interval elapses
+        private int maxPending = 1000;
+
+        // Acknowledge a toggle only once the flush containing it has committed
+        private boolean durableOnAck = false;
+
+        private Duration ackTimeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Outbox {
+
+        // Only one relay numbers the feed at a time; a second instance's attempt fails on the unique sequence
+        private boolean relayEnabled = true;
+
+        private Duration relayInterval = Duration.ofMillis(500);
+
+        private int batchSize = 500;
+
+        // Published changes older than this are deleted and drop out of the change feed
+        private Duration retention = Duration.ofDays(7);
+    }
+
+    @Data
+    public static class Idempotency {
+
+        // How long a stored response is replayed for its Idempotency-Key
+        private Duration timeToLive = Duration.ofHours(24);
+
+        // Keys whose responses are also kept in memory; the table holds all of them
+        private long maximumKeys = 100_000;
+
+        // How long a duplicate waits for the first request before giving up with 409
+        private Duration inFlightTimeout = Duration.ofSeconds(10);
+
+        // A claim older than this is treated as abandoned by a node that died mid-request
+        private Duration claimTimeout = Duration.ofSeconds(30);
+
+        private Duration purgeInterval = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Recurring {
+
+        // Renews MONTHLY payments at the start of each month; enable on one instance only
+        private boolean enabled = false;
+
+        // How often the job checks whether the current month has been renewed, and resumes an unfinished run
+        private Duration checkInterval = Duration.ofMinutes(10);
+
+        private int workers = 4;
+
+        // Payments per keyset chunk, renewed in one transaction
+        private int chunkSize = 1000;
+    }
+
+    @Data
+    public static class Archive {
+
+        // Moves old PAID single and CANCELLED payments to payment_archive; enable on one instance only
+        private boolean enabled = false;
+
+        // Payments created longer ago than this are archived
+        private Duration age = Duration.ofDays(365);
+
+        private Duration interval = Duration.ofHours(1);
+
+        // Payments moved per transaction
+        private int batchSize = 500;
+
+        // Pause between batches, to leave the database headroom for live traffic
+        private Duration pause = Duration.ofMillis(100);
+    }
+
+    @Data
+    public static class Replica {
+
+        // Sends read-only listing queries to the payment.replica.datasource.* pool; writes stay on the primary
+        private boolean enabled = false;
+
+        // Reads of an event or user written within this window go to the primary, so writers see their own writes
+        private Duration maxLag = Duration.ofSeconds(2);
+    }
+}
@@ -0,0 +1,63 @@
+package event.payment.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+// The pool and its transaction manager stay out of the context: a ConnectionFactory or second
+// TransactionManager bean would back off the JDBC DataSource and JPA transaction manager
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(R2dbcProperties.class)
+public class ReactiveConfig {
+
+    private final ConnectionPool connectionPool;
+
+    public ReactiveConfig(R2dbcProperties r2dbcProperties) {
+
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(r2dbcProperties.getUrl())
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, r2dbcProperties.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, r2dbcProperties.getPassword())
+                .build();
+
+        R2dbcProperties.Pool pool = r2dbcProperties.getPool();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient databaseClient() {
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator() {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionPool));
+    }
+
+    // Tomcat is on the classpath for the servlet stack and would otherwise win over Netty
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @PreDestroy
+    public void closeConnectionPool() {
+        connectionPool.dispose();
+    }
+}
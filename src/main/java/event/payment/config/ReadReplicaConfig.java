@@ -0,0 +1,69 @@
+package event.payment.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+// Two Hikari pools behind one routing DataSource: read-only transactions that ReadRouting sends to the replica use
+// the payment.replica.datasource.* pool, everything else the spring.datasource.* pool. The lazy proxy defers the
+// physical connection to the first statement, after the transaction is marked read-only and the route is chosen.
+@Configuration
+@ConditionalOnProperty(prefix = "payment.replica", name = "enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName(PRIMARY);
+
+        return dataSource;
+    }
+
+    // Bound straight onto the pool: payment.replica.datasource.jdbc-url, username, password, maximum-pool-size, ...
+    @Bean
+    @ConfigurationProperties("payment.replica.datasource")
+    public HikariDataSource replicaDataSource() {
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(REPLICA);
+        dataSource.setReadOnly(true);
+
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource) {
+
+        AbstractRoutingDataSource routingDataSource = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && ReadRouting.isReplicaRead()
+                        ? REPLICA
+                        : PRIMARY;
+            }
+        };
+        routingDataSource.setTargetDataSources(Map.of(PRIMARY, primaryDataSource, REPLICA, replicaDataSource));
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -0,0 +1,131 @@
+package event.payment.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import event.payment.model.PaymentKey;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Decides which read-only queries may go to the replica. Events and users written within max-lag are read from
+// the primary, so a caller sees its own upsert and a cache miss never fills the cache from a replica that has not
+// caught up yet. Only queries run through read*() are routed, each in a read-only transaction (or joining the
+// caller's); every other query stays on the primary.
+@Component
+public class ReadRouting {
+
+    private static final ThreadLocal<Boolean> REPLICA = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final Cache<UUID, Boolean> writtenEvents;
+    private final Cache<UUID, Boolean> writtenUsers;
+    private final TransactionTemplate readOnlyTransaction;
+    private final MeterRegistry meterRegistry;
+    private final List<Consumer<PaymentKey>> committedListeners = new CopyOnWriteArrayList<>();
+
+    public ReadRouting(PaymentProperties paymentProperties,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       Ticker ticker) {
+        PaymentProperties.Replica replica = paymentProperties.getReplica();
+        this.enabled = replica.isEnabled();
+        this.writtenEvents = Caffeine.newBuilder().expireAfterWrite(replica.getMaxLag()).ticker(ticker).build();
+        this.writtenUsers = Caffeine.newBuilder().expireAfterWrite(replica.getMaxLag()).ticker(ticker).build();
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Inside a transaction the window starts again at commit, when the replica starts catching up
+    public void written(Collection<PaymentKey> keys) {
+
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (enabled) {
+            record(keys);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    if (enabled) {
+                        record(keys);
+                    }
+                    committed(keys);
+                }
+            });
+        } else {
+            committed(keys);
+        }
+    }
+
+    // Told about every payment written, once the write commits, whether or not a replica is configured
+    public void onCommitted(Consumer<PaymentKey> listener) {
+        committedListeners.add(listener);
+    }
+
+    public <T> T readByEvent(UUID eventId, Supplier<T> query) {
+        return read(writtenEvents.getIfPresent(eventId) == null, query);
+    }
+
+    public <T> T readByUser(UUID userId, Supplier<T> query) {
+        return read(writtenUsers.getIfPresent(userId) == null, query);
+    }
+
+    // A query over many keys goes to the replica only if none of them was written recently
+    public <T> T readByKeys(Collection<UUID> eventIds, Collection<UUID> userIds, Supplier<T> query) {
+        return read(writtenEvents.getAllPresent(eventIds).isEmpty() && writtenUsers.getAllPresent(userIds).isEmpty(), query);
+    }
+
+    // For reads not tied to one event or user, where replica lag only delays what the caller sees
+    public <T> T read(Supplier<T> query) {
+        return read(true, query);
+    }
+
+    static boolean isReplicaRead() {
+        return Boolean.TRUE.equals(REPLICA.get());
+    }
+
+    private <T> T read(boolean replica, Supplier<T> query) {
+
+        if (!enabled) {
+            return query.get();
+        }
+        meterRegistry.counter("payment.replica.reads", "target", replica ? "replica" : "primary").increment();
+
+        Boolean previous = REPLICA.get();
+        REPLICA.set(replica);
+        try {
+            return readOnlyTransaction.execute(status -> query.get());
+        } finally {
+            REPLICA.set(previous);
+        }
+    }
+
+    private void committed(Collection<PaymentKey> keys) {
+
+        for (Consumer<PaymentKey> listener : committedListeners) {
+            keys.forEach(listener);
+        }
+    }
+
+    private void record(Collection<PaymentKey> keys) {
+
+        for (PaymentKey key : keys) {
+            writtenEvents.put(key.eventId(), Boolean.TRUE);
+            writtenUsers.put(key.userId(), Boolean.TRUE);
+        }
+    }
+}
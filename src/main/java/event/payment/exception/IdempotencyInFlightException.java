@@ -0,0 +1,8 @@
+package event.payment.exception;
+
+public class IdempotencyInFlightException extends RuntimeException {
+
+    public IdempotencyInFlightException(String key) {
+        super("A request with Idempotency-Key [%s] is still in progress, please retry".formatted(key));
+    }
+}
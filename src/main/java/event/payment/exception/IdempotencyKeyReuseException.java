@@ -0,0 +1,8 @@
+package event.payment.exception;
+
+public class IdempotencyKeyReuseException extends RuntimeException {
+
+    public IdempotencyKeyReuseException(String key) {
+        super("Idempotency-Key [%s] was already used for a different request".formatted(key));
+    }
+}
@@ -0,0 +1,8 @@
+package event.payment.exception;
+
+public class InvalidBatchException extends RuntimeException {
+
+    public InvalidBatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package event.payment.exception;
+
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String cursor) {
+        super("Invalid cursor: " + cursor);
+    }
+}
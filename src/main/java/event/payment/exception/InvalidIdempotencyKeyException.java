@@ -0,0 +1,8 @@
+package event.payment.exception;
+
+public class InvalidIdempotencyKeyException extends RuntimeException {
+
+    public InvalidIdempotencyKeyException(String key) {
+        super("Invalid Idempotency-Key: [%s], expected 1 to 255 characters".formatted(key));
+    }
+}
@@ -0,0 +1,8 @@
+package event.payment.exception;
+
+public class InvalidLookupException extends RuntimeException {
+
+    public InvalidLookupException(String message) {
+        super(message);
+    }
+}
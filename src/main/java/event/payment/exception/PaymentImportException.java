@@ -0,0 +1,8 @@
+package event.payment.exception;
+
+public class PaymentImportException extends RuntimeException {
+
+    public PaymentImportException(long importedRows, Throwable cause) {
+        super("Import stopped after %d rows: %s".formatted(importedRows, cause.getMessage()), cause);
+    }
+}
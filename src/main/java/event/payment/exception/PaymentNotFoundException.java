@@ -0,0 +1,10 @@
+package event.payment.exception;
+
+import java.util.UUID;
+
+public class PaymentNotFoundException extends RuntimeException {
+
+    public PaymentNotFoundException(UUID eventId, UUID userId) {
+        super("Payment for event [%s] and user [%s] does not exist".formatted(eventId, userId));
+    }
+}
@@ -0,0 +1,13 @@
+package event.payment.exception;
+
+import event.payment.model.PaymentTransition;
+
+import java.util.UUID;
+
+public class PaymentTransitionException extends RuntimeException {
+
+    public PaymentTransitionException(UUID eventId, UUID userId, PaymentTransition transition) {
+        super("Payment for event [%s] and user [%s] must be in %s to %s"
+                .formatted(eventId, userId, transition.getFrom(), transition));
+    }
+}
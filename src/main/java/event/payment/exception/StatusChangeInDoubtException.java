@@ -0,0 +1,12 @@
+package event.payment.exception;
+
+import java.time.Duration;
+import java.util.UUID;
+
+public class StatusChangeInDoubtException extends RuntimeException {
+
+    public StatusChangeInDoubtException(UUID eventId, UUID userId, Duration timeout) {
+        super("Status change of payment for event [%s] and user [%s] was still being persisted after %s, read the payment before retrying"
+                .formatted(eventId, userId, timeout));
+    }
+}
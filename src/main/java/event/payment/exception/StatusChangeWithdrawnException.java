@@ -0,0 +1,12 @@
+package event.payment.exception;
+
+import java.time.Duration;
+import java.util.UUID;
+
+public class StatusChangeWithdrawnException extends RuntimeException {
+
+    public StatusChangeWithdrawnException(UUID eventId, UUID userId, Duration timeout) {
+        super("Status change of payment for event [%s] and user [%s] was not persisted within %s and was withdrawn, please retry"
+                .formatted(eventId, userId, timeout));
+    }
+}
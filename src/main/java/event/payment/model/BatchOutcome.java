@@ -0,0 +1,5 @@
+package event.payment.model;
+
+public enum BatchOutcome {
+    CREATED, UPDATED, REJECTED
+}
@@ -0,0 +1,40 @@
+package event.payment.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// The first response to an Idempotency-Key. A row without a response is a claim held by the node running it.
+@Data
+@Entity
+@Table(indexes = @Index(name = "ix_idempotency_record_created", columnList = "created_on"))
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    @Id
+    @Column(length = 255)
+    private String idempotencyKey;
+
+    // SHA-256 of the request body, so a key reused for a different request is rejected
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    @Lob
+    private String responseBody;
+
+    @Column(nullable = false)
+    private LocalDateTime createdOn;
+
+    private LocalDateTime completedOn;
+}
@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -13,13 +14,22 @@ import java.util.UUID;
 
 @Data
 @Entity
+@Table(
+        uniqueConstraints = @UniqueConstraint(name = "ux_payment_event_user", columnNames = {"event_id", "user_id"}),
+        indexes = {
+                @Index(name = "ix_payment_user_created", columnList = "user_id, created_on"),
+                @Index(name = "ix_payment_event_created", columnList = "event_id, created_on"),
+                @Index(name = "ix_payment_type_status", columnList = "type, status"),
+                @Index(name = "ix_payment_status_type_created", columnList = "status, type, created_on")
+        }
+)
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class Payment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidGenerator(algorithm = UuidV7.class)
     private UUID id;
 
     @Column(nullable = false)
@@ -46,7 +56,13 @@ public class Payment {
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdOn;
 
+    // Set on insert; every write sets it explicitly, and recurring billing relies on it to skip payments already
+    // touched in the period it renews
     @CreationTimestamp
-    @Column(nullable = false, updatable = false)
+    @Column(nullable = false)
     private LocalDateTime updatedOn;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
 }
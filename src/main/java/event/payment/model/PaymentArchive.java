@@ -0,0 +1,80 @@
+package event.payment.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// A settled or cancelled payment moved out of the hot `payment` table, with its id and columns unchanged.
+// There is no unique key on (event_id, user_id): a pair paid again after archiving has a new hot row.
+@Data
+@Entity
+@Table(
+        indexes = {
+                @Index(name = "ix_payment_archive_user_created", columnList = "user_id, created_on"),
+                @Index(name = "ix_payment_archive_event_created", columnList = "event_id, created_on")
+        }
+)
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentArchive {
+
+    @Id
+    private UUID id;
+
+    @Column(nullable = false)
+    private UUID userId;
+
+    private String username;
+
+    @Column(nullable = false)
+    private UUID eventId;
+
+    private String eventName;
+
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private PaymentType type;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private PaymentStatus status;
+
+    @Column(nullable = false)
+    private LocalDateTime createdOn;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedOn;
+
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedOn;
+
+    public static PaymentArchive of(Payment payment, LocalDateTime archivedOn) {
+
+        return PaymentArchive.builder()
+                .id(payment.getId())
+                .userId(payment.getUserId())
+                .username(payment.getUsername())
+                .eventId(payment.getEventId())
+                .eventName(payment.getEventName())
+                .amount(payment.getAmount())
+                .type(payment.getType())
+                .status(payment.getStatus())
+                .createdOn(payment.getCreatedOn())
+                .updatedOn(payment.getUpdatedOn())
+                .version(payment.getVersion())
+                .archivedOn(archivedOn)
+                .build();
+    }
+}
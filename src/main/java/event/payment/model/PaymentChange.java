@@ -0,0 +1,86 @@
+package event.payment.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Outbox record written in the same transaction as the payment change it describes. The relay numbers records
+// in commit order, so the feed never skips a change that committed after a later-created one.
+@Data
+@Entity
+@Table(
+        uniqueConstraints = @UniqueConstraint(name = "ux_payment_change_sequence", columnNames = "sequence_number"),
+        indexes = {
+                @Index(name = "ix_payment_change_unsequenced", columnList = "sequence_number, changed_on"),
+                @Index(name = "ix_payment_change_published", columnList = "published_on")
+        }
+)
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentChange {
+
+    @Id
+    @UuidGenerator(algorithm = UuidV7.class)
+    private UUID id;
+
+    private Long sequenceNumber;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private PaymentChangeType changeType;
+
+    @Column(nullable = false)
+    private UUID eventId;
+
+    @Column(nullable = false)
+    private UUID userId;
+
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private PaymentType type;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private PaymentStatus status;
+
+    @Column(nullable = false)
+    private LocalDateTime changedOn;
+
+    private LocalDateTime publishedOn;
+
+    public static PaymentChange of(Payment payment, PaymentChangeType changeType) {
+
+        return PaymentChange.builder()
+                .changeType(changeType)
+                .eventId(payment.getEventId())
+                .userId(payment.getUserId())
+                .amount(payment.getAmount())
+                .type(payment.getType())
+                .status(payment.getStatus())
+                .changedOn(LocalDateTime.now())
+                .build();
+    }
+
+    public static PaymentChange of(PaymentView payment, PaymentChangeType changeType) {
+
+        return PaymentChange.builder()
+                .changeType(changeType)
+                .eventId(payment.eventId())
+                .userId(payment.userId())
+                .amount(payment.amount())
+                .type(payment.type())
+                .status(payment.status())
+                .changedOn(LocalDateTime.now())
+                .build();
+    }
+}
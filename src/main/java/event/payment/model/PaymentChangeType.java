@@ -0,0 +1,5 @@
+package event.payment.model;
+
+public enum PaymentChangeType {
+    CREATED, UPDATED, STATUS_CHANGED, ARCHIVED
+}
@@ -0,0 +1,37 @@
+package event.payment.model;
+
+import event.payment.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+public record PaymentCursor(LocalDateTime createdOn, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static PaymentCursor of(PaymentView payment) {
+        return new PaymentCursor(payment.createdOn(), payment.id());
+    }
+
+    public static PaymentCursor decode(String token) {
+
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            return new PaymentCursor(
+                    LocalDateTime.parse(value.substring(0, separator)),
+                    UUID.fromString(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InvalidCursorException(token);
+        }
+    }
+
+    public String encode() {
+
+        String value = createdOn + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
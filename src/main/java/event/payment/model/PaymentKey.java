@@ -0,0 +1,10 @@
+package event.payment.model;
+
+import java.util.UUID;
+
+public record PaymentKey(UUID eventId, UUID userId) {
+
+    public static PaymentKey of(Payment payment) {
+        return new PaymentKey(payment.getEventId(), payment.getUserId());
+    }
+}
@@ -0,0 +1,12 @@
+package event.payment.model;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Result of a bulk lookup: every requested user and event with its payments (empty when it has none), and the
+// requested event and user pairs that have a payment
+public record PaymentLookup(Map<UUID, List<PaymentView>> byUser,
+                            Map<UUID, List<PaymentView>> byEvent,
+                            List<PaymentView> payments) {
+}
@@ -0,0 +1,29 @@
+package event.payment.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+// Count and amount of the payments of one event or user in one (status, type) cell, kept current by every write
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentSummary {
+
+    @EmbeddedId
+    private PaymentSummaryKey id;
+
+    @Column(nullable = false)
+    private long paymentCount;
+
+    @Column(nullable = false)
+    private BigDecimal amountSum;
+}
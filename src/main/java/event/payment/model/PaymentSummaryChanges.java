@@ -0,0 +1,66 @@
+package event.payment.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+// Collects the summary deltas of one transaction so each touched cell is written once
+public class PaymentSummaryChanges {
+
+    // Cells are written in a fixed order so concurrent transactions lock them in the same order
+    private static final Comparator<PaymentSummaryKey> ORDER = Comparator
+            .comparing(PaymentSummaryKey::getOwnerType)
+            .thenComparing(PaymentSummaryKey::getOwnerId)
+            .thenComparing(PaymentSummaryKey::getStatus)
+            .thenComparing(PaymentSummaryKey::getType);
+
+    private final Map<PaymentSummaryKey, PaymentSummary> deltas = new TreeMap<>(ORDER);
+
+    public void add(Payment payment) {
+        add(payment.getEventId(), payment.getUserId(), payment.getStatus(), payment.getType(), payment.getAmount());
+    }
+
+    public void remove(Payment payment) {
+        remove(payment.getEventId(), payment.getUserId(), payment.getStatus(), payment.getType(), payment.getAmount());
+    }
+
+    public void add(UUID eventId, UUID userId, PaymentStatus status, PaymentType type, BigDecimal amount) {
+        change(eventId, userId, status, type, 1, amount);
+    }
+
+    public void remove(UUID eventId, UUID userId, PaymentStatus status, PaymentType type, BigDecimal amount) {
+        change(eventId, userId, status, type, -1, amount == null ? null : amount.negate());
+    }
+
+    // Cells whose changes cancel out, e.g. a status toggled there and back, are left untouched
+    public List<PaymentSummary> deltas() {
+
+        List<PaymentSummary> changed = new ArrayList<>(deltas.size());
+        for (PaymentSummary delta : deltas.values()) {
+            if (delta.getPaymentCount() != 0 || delta.getAmountSum().signum() != 0) {
+                changed.add(delta);
+            }
+        }
+        return changed;
+    }
+
+    private void change(UUID eventId, UUID userId, PaymentStatus status, PaymentType type, int count, BigDecimal amount) {
+
+        change(new PaymentSummaryKey(SummaryOwner.EVENT, eventId, status, type), count, amount);
+        change(new PaymentSummaryKey(SummaryOwner.USER, userId, status, type), count, amount);
+    }
+
+    private void change(PaymentSummaryKey key, int count, BigDecimal amount) {
+
+        PaymentSummary delta = deltas.computeIfAbsent(key,
+                ignored -> PaymentSummary.builder().id(key).amountSum(BigDecimal.ZERO).build());
+        delta.setPaymentCount(delta.getPaymentCount() + count);
+        if (amount != null) {
+            delta.setAmountSum(delta.getAmountSum().add(amount));
+        }
+    }
+}
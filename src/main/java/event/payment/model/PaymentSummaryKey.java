@@ -0,0 +1,34 @@
+package event.payment.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+@Data
+@Embeddable
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentSummaryKey implements Serializable {
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private SummaryOwner ownerType;
+
+    @Column(nullable = false)
+    private UUID ownerId;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private PaymentStatus status;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private PaymentType type;
+}
@@ -0,0 +1,22 @@
+package event.payment.model;
+
+import lombok.Getter;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+@Getter
+public enum PaymentTransition {
+    PAY(PaymentStatus.PAID, EnumSet.of(PaymentStatus.PENDING)),
+    REVERT(PaymentStatus.PENDING, EnumSet.of(PaymentStatus.PAID)),
+    CANCEL(PaymentStatus.CANCELLED, EnumSet.of(PaymentStatus.PENDING, PaymentStatus.PAID));
+
+    private final PaymentStatus target;
+
+    private final Set<PaymentStatus> from;
+
+    PaymentTransition(PaymentStatus target, Set<PaymentStatus> from) {
+        this.target = target;
+        this.from = from;
+    }
+}
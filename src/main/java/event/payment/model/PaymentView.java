@@ -0,0 +1,20 @@
+package event.payment.model;
+
+import lombok.Builder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Builder
+public record PaymentView(
+        UUID id,
+        UUID eventId,
+        UUID userId,
+        String username,
+        String eventName,
+        BigDecimal amount,
+        PaymentType type,
+        PaymentStatus status,
+        LocalDateTime createdOn) {
+}
@@ -0,0 +1,37 @@
+package event.payment.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Progress of the recurring-billing run for one month, so a run interrupted by a crash resumes where it stopped
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecurringBillingRun {
+
+    // First day of the renewed month
+    @Id
+    private LocalDate period;
+
+    // Every due payment with an id up to this one has been renewed
+    private UUID checkpoint;
+
+    @Column(nullable = false)
+    private long renewed;
+
+    @Column(nullable = false)
+    private LocalDateTime startedOn;
+
+    private LocalDateTime completedOn;
+}
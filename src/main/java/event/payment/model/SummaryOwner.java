@@ -0,0 +1,5 @@
+package event.payment.model;
+
+public enum SummaryOwner {
+    EVENT, USER
+}
@@ -0,0 +1,37 @@
+package event.payment.model;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.uuid.UuidValueGenerator;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// RFC 9562 version 7 UUIDs: a 48-bit Unix millisecond timestamp followed by a 12-bit counter and 62 random bits.
+// Ids generated later sort after earlier ones as BINARY(16), so inserts append to the right-hand edge of the
+// clustered primary key instead of splitting random pages. Ids are not secrets, so a non-cryptographic random suffices.
+public final class UuidV7 implements UuidValueGenerator {
+
+    // Last issued timestamp and counter as (millis << 12 | counter); a full counter borrows the next millisecond
+    private static final AtomicLong LAST = new AtomicLong();
+
+    public static UUID next() {
+        return next(System.currentTimeMillis());
+    }
+
+    static UUID next(long currentTimeMillis) {
+
+        long now = currentTimeMillis << 12;
+        long issued = LAST.updateAndGet(last -> Math.max(now, last + 1));
+
+        long mostSignificant = (issued >>> 12) << 16 | 0x7000L | (issued & 0xFFFL);
+        long leastSignificant = ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+
+        return new UUID(mostSignificant, leastSignificant);
+    }
+
+    @Override
+    public UUID generateUuid(SharedSessionContractImplementor session) {
+        return next();
+    }
+}
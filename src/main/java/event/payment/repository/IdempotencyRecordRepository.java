@@ -0,0 +1,34 @@
+package event.payment.repository;
+
+import event.payment.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // A plain INSERT, unlike save(), fails on an existing key instead of merging into it
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_record (idempotency_key, request_hash, created_on)
+            VALUES (:key, :requestHash, :createdOn)
+            """, nativeQuery = true)
+    int claim(String key, String requestHash, LocalDateTime createdOn);
+
+    @Modifying
+    @Query("""
+            update IdempotencyRecord r set r.responseBody = :responseBody, r.completedOn = :completedOn
+            where r.idempotencyKey = :key and r.createdOn = :createdOn
+            """)
+    int complete(String key, LocalDateTime createdOn, String responseBody, LocalDateTime completedOn);
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.idempotencyKey = :key and r.createdOn = :createdOn")
+    int deleteClaim(String key, LocalDateTime createdOn);
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.createdOn < :cutoff")
+    int deleteCreatedBefore(LocalDateTime cutoff);
+}
@@ -0,0 +1,15 @@
+package event.payment.repository;
+
+import event.payment.model.PaymentArchive;
+import event.payment.model.PaymentView;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface PaymentArchiveRepository extends JpaRepository<PaymentArchive, UUID> {
+
+    List<PaymentView> findViewsByEventId(UUID eventId);
+
+    List<PaymentView> findViewsByUserId(UUID userId);
+}
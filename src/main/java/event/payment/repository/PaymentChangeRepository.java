@@ -0,0 +1,32 @@
+package event.payment.repository;
+
+import event.payment.model.PaymentChange;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface PaymentChangeRepository extends JpaRepository<PaymentChange, UUID> {
+
+    List<PaymentChange> findBySequenceNumberIsNullOrderByChangedOnAscIdAsc(Limit limit);
+
+    List<PaymentChange> findBySequenceNumberIsNotNullAndPublishedOnIsNullOrderBySequenceNumberAsc(Limit limit);
+
+    List<PaymentChange> findBySequenceNumberGreaterThanOrderBySequenceNumberAsc(long after, Limit limit);
+
+    @Query("select coalesce(max(c.sequenceNumber), 0) from PaymentChange c")
+    long findMaxSequenceNumber();
+
+    @Modifying
+    @Query("update PaymentChange c set c.publishedOn = :now where c.id in :ids")
+    int markPublished(Collection<UUID> ids, LocalDateTime now);
+
+    @Modifying
+    @Query("delete from PaymentChange c where c.publishedOn < :cutoff")
+    int deletePublishedBefore(LocalDateTime cutoff);
+}
@@ -1,16 +1,119 @@
 package event.payment.repository;
 
 import event.payment.model.Payment;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentType;
+import event.payment.model.PaymentView;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
-public interface PaymentRepository extends JpaRepository<Payment, UUID> {
+public interface PaymentRepository extends JpaRepository<Payment, UUID>, PaymentRepositoryCustom {
     List<Payment> findAllByEventId(UUID eventId);
 
     List<Payment> findAllByUserId(UUID userId);
 
     Optional<Payment> findByEventIdAndUserId(UUID eventId, UUID userId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Payment> findForUpdateByEventIdAndUserId(UUID eventId, UUID userId);
+
+    boolean existsByEventIdAndUserId(UUID eventId, UUID userId);
+
+    Optional<PaymentView> findViewByEventIdAndUserId(UUID eventId, UUID userId);
+
+    List<PaymentView> findViewsByEventId(UUID eventId);
+
+    List<PaymentView> findViewsByUserId(UUID userId);
+
+    List<PaymentView> findViewsByEventIdIn(Collection<UUID> eventIds);
+
+    List<PaymentView> findViewsByUserIdIn(Collection<UUID> userIds);
+
+    Slice<PaymentView> findViewsByEventId(UUID eventId, Pageable pageable);
+
+    Slice<PaymentView> findViewsByUserId(UUID userId, Pageable pageable);
+
+    List<PaymentView> findViewsByEventIdOrderByCreatedOnAscIdAsc(UUID eventId, Limit limit);
+
+    List<PaymentView> findViewsByUserIdOrderByCreatedOnAscIdAsc(UUID userId, Limit limit);
+
+    @Query("""
+            select new event.payment.model.PaymentView(
+                p.id, p.eventId, p.userId, p.username, p.eventName, p.amount, p.type, p.status, p.createdOn)
+            from Payment p
+            where p.eventId = :eventId
+              and (p.createdOn > :createdOn or (p.createdOn = :createdOn and p.id > :id))
+            order by p.createdOn, p.id
+            """)
+    List<PaymentView> findViewsByEventIdAfter(UUID eventId, LocalDateTime createdOn, UUID id, Limit limit);
+
+    @Query("""
+            select new event.payment.model.PaymentView(
+                p.id, p.eventId, p.userId, p.username, p.eventName, p.amount, p.type, p.status, p.createdOn)
+            from Payment p
+            where p.userId = :userId
+              and (p.createdOn > :createdOn or (p.createdOn = :createdOn and p.id > :id))
+            order by p.createdOn, p.id
+            """)
+    List<PaymentView> findViewsByUserIdAfter(UUID userId, LocalDateTime createdOn, UUID id, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<PaymentView> streamViewsByEventId(UUID eventId);
+
+    List<Payment> findAllByEventIdAndUserIdIn(UUID eventId, Collection<UUID> userIds);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Payment> findAllForUpdateByEventIdAndUserIdIn(UUID eventId, Collection<UUID> userIds);
+
+    // Oldest payments in one archivable state, locked so no write can land between copying and deleting them
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Payment> findByStatusAndTypeAndCreatedOnBeforeOrderByCreatedOnAsc(PaymentStatus status, PaymentType type,
+                                                                           LocalDateTime cutoff, Limit limit);
+
+    // Keyset scan over paid MONTHLY payments not touched since the period started, in primary key order
+    @Query("""
+            select p.id from Payment p
+            where p.type = event.payment.model.PaymentType.MONTHLY
+              and p.status = event.payment.model.PaymentStatus.PAID
+              and p.updatedOn < :periodStart
+              and p.id > :after
+            order by p.id
+            """)
+    List<UUID> findIdsDueForRenewal(LocalDateTime periodStart, UUID after, Limit limit);
+
+    // A no-op on an existing (event_id, user_id), which it leaves locked like an insert would
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            INSERT INTO payment (id, event_id, user_id, username, amount, type, status, created_on, updated_on, version)
+            VALUES (:id, :eventId, :userId, :username, :amount, :type, :status, :now, :now, 0)
+            ON DUPLICATE KEY UPDATE id = id
+            """, nativeQuery = true)
+    int insertIfAbsent(UUID id, UUID eventId, UUID userId, String username, BigDecimal amount,
+                       String type, String status, LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Payment p
+            set p.status = :target, p.updatedOn = :now, p.version = p.version + 1
+            where p.eventId = :eventId and p.userId = :userId and p.status in :from
+            """)
+    int transitionStatus(UUID eventId, UUID userId, Collection<PaymentStatus> from, PaymentStatus target,
+                         LocalDateTime now);
 }
@@ -0,0 +1,17 @@
+package event.payment.repository;
+
+import event.payment.model.Payment;
+import event.payment.model.PaymentKey;
+import event.payment.model.PaymentView;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface PaymentRepositoryCustom {
+
+    // Inserts the payments whose (event_id, user_id) is still free and leaves the others as they are, locking both
+    void insertAllIfAbsent(Collection<Payment> payments);
+
+    // The payments of the given (event_id, user_id) pairs, whatever events they belong to, in one statement
+    List<PaymentView> findViewsByPairs(Collection<PaymentKey> pairs);
+}
@@ -0,0 +1,92 @@
+package event.payment.repository;
+
+import event.payment.model.Payment;
+import event.payment.model.PaymentKey;
+import event.payment.model.PaymentView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.StringJoiner;
+
+// The batch form of insertIfAbsent: one multi-row INSERT ... ON DUPLICATE KEY UPDATE per MAX_ROWS payments, so a key
+// inserted concurrently by another transaction is waited on and kept instead of failing the batch on the unique key.
+// Rows are sent in (event_id, user_id) order, so concurrent batches lock shared keys in the same order.
+class PaymentRepositoryImpl implements PaymentRepositoryCustom {
+
+    private static final int MAX_ROWS = 500;
+
+    private static final Comparator<Payment> ORDER = Comparator
+            .comparing(Payment::getEventId)
+            .thenComparing(Payment::getUserId);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void insertAllIfAbsent(Collection<Payment> payments) {
+
+        List<Payment> rows = payments.stream().sorted(ORDER).toList();
+        for (int from = 0; from < rows.size(); from += MAX_ROWS) {
+            insert(rows.subList(from, Math.min(from + MAX_ROWS, rows.size())));
+        }
+    }
+
+    // An OR of (event_id, user_id) equalities, which MySQL reads as one range per pair of the unique key. Callers bound
+    // the number of pairs per statement.
+    @Override
+    public List<PaymentView> findViewsByPairs(Collection<PaymentKey> pairs) {
+
+        if (pairs.isEmpty()) {
+            return List.of();
+        }
+
+        List<PaymentKey> keys = new ArrayList<>(pairs);
+        StringJoiner matches = new StringJoiner(" or ");
+        for (int i = 0; i < keys.size(); i++) {
+            matches.add("(p.eventId = :eventId%d and p.userId = :userId%d)".formatted(i, i));
+        }
+        TypedQuery<PaymentView> query = entityManager.createQuery("""
+                select new event.payment.model.PaymentView(
+                    p.id, p.eventId, p.userId, p.username, p.eventName, p.amount, p.type, p.status, p.createdOn)
+                from Payment p
+                where %s
+                """.formatted(matches), PaymentView.class);
+
+        for (int i = 0; i < keys.size(); i++) {
+            query.setParameter("eventId" + i, keys.get(i).eventId());
+            query.setParameter("userId" + i, keys.get(i).userId());
+        }
+        return query.getResultList();
+    }
+
+    private void insert(List<Payment> rows) {
+
+        StringJoiner values = new StringJoiner(", ");
+        rows.forEach(row -> values.add("(?, ?, ?, ?, ?, ?, ?, ?, ?, 0)"));
+        Query query = entityManager.createNativeQuery("""
+                INSERT INTO payment (id, event_id, user_id, username, amount, type, status, created_on, updated_on, version)
+                VALUES %s
+                ON DUPLICATE KEY UPDATE id = id
+                """.formatted(values));
+
+        int position = 1;
+        for (Payment row : rows) {
+            query.setParameter(position++, row.getId());
+            query.setParameter(position++, row.getEventId());
+            query.setParameter(position++, row.getUserId());
+            query.setParameter(position++, row.getUsername());
+            query.setParameter(position++, row.getAmount());
+            query.setParameter(position++, row.getType().name());
+            query.setParameter(position++, row.getStatus().name());
+            query.setParameter(position++, row.getCreatedOn());
+            query.setParameter(position++, row.getUpdatedOn());
+        }
+        query.executeUpdate();
+    }
+}
@@ -0,0 +1,15 @@
+package event.payment.repository;
+
+import event.payment.model.PaymentSummary;
+import event.payment.model.PaymentSummaryKey;
+import event.payment.model.SummaryOwner;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface PaymentSummaryRepository extends JpaRepository<PaymentSummary, PaymentSummaryKey>,
+        PaymentSummaryRepositoryCustom {
+
+    List<PaymentSummary> findAllByIdOwnerTypeAndIdOwnerId(SummaryOwner ownerType, UUID ownerId);
+}
@@ -0,0 +1,9 @@
+package event.payment.repository;
+
+import event.payment.model.PaymentSummaryChanges;
+
+public interface PaymentSummaryRepositoryCustom {
+
+    // Adds the deltas of one transaction to their summary cells
+    void apply(PaymentSummaryChanges changes);
+}
@@ -0,0 +1,56 @@
+package event.payment.repository;
+
+import event.payment.model.PaymentSummary;
+import event.payment.model.PaymentSummaryChanges;
+import event.payment.model.PaymentSummaryKey;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+// All cells of a transaction in one multi-row INSERT ... ON DUPLICATE KEY UPDATE, so an upsert pays one statement
+// for its up to four cells. Rows keep the key order of PaymentSummaryChanges, which is the order InnoDB locks them in.
+class PaymentSummaryRepositoryImpl implements PaymentSummaryRepositoryCustom {
+
+    // Bounds the statement (and its bind parameters) for batches, recurring billing and archiving
+    private static final int MAX_ROWS = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void apply(PaymentSummaryChanges changes) {
+
+        List<PaymentSummary> deltas = changes.deltas();
+        for (int from = 0; from < deltas.size(); from += MAX_ROWS) {
+            addDeltas(deltas.subList(from, Math.min(from + MAX_ROWS, deltas.size())));
+        }
+    }
+
+    private void addDeltas(List<PaymentSummary> deltas) {
+
+        StringJoiner values = new StringJoiner(", ");
+        deltas.forEach(delta -> values.add("(?, ?, ?, ?, ?, ?)"));
+        Query query = entityManager.createNativeQuery("""
+                INSERT INTO payment_summary (owner_type, owner_id, status, type, payment_count, amount_sum)
+                VALUES %s
+                ON DUPLICATE KEY UPDATE
+                    payment_count = payment_count + VALUES(payment_count),
+                    amount_sum = amount_sum + VALUES(amount_sum)
+                """.formatted(values));
+
+        int position = 1;
+        for (PaymentSummary delta : deltas) {
+            PaymentSummaryKey key = delta.getId();
+            query.setParameter(position++, key.getOwnerType().name());
+            query.setParameter(position++, key.getOwnerId());
+            query.setParameter(position++, key.getStatus().name());
+            query.setParameter(position++, key.getType().name());
+            query.setParameter(position++, delta.getPaymentCount());
+            query.setParameter(position++, delta.getAmountSum());
+        }
+        query.executeUpdate();
+    }
+}
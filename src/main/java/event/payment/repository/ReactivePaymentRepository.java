@@ -0,0 +1,328 @@
+package event.payment.repository;
+
+import event.payment.model.PaymentChange;
+import event.payment.model.PaymentCursor;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentSummary;
+import event.payment.model.PaymentSummaryChanges;
+import event.payment.model.PaymentSummaryKey;
+import event.payment.model.PaymentType;
+import event.payment.model.PaymentView;
+import event.payment.model.SummaryOwner;
+import event.payment.model.UuidV7;
+import io.r2dbc.spi.Parameters;
+import io.r2dbc.spi.R2dbcType;
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+@Profile("reactive")
+@Repository
+public class ReactivePaymentRepository {
+
+    private static final String SELECT_VIEW = """
+            select id, event_id, user_id, username, event_name, amount, type, status, created_on
+            from payment
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final boolean binaryUuids;
+
+    public ReactivePaymentRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+        // Hibernate maps UUID to BINARY(16) on MySQL; H2 has a native UUID type
+        this.binaryUuids = "MySQL".equalsIgnoreCase(databaseClient.getConnectionFactory().getMetadata().getName());
+    }
+
+    public Mono<PaymentView> findViewByEventIdAndUserId(UUID eventId, UUID userId) {
+
+        return databaseClient.sql(SELECT_VIEW + "where event_id = :eventId and user_id = :userId")
+                .bind("eventId", bind(eventId))
+                .bind("userId", bind(userId))
+                .map(this::toView)
+                .one();
+    }
+
+    public Mono<PaymentView> lockViewByEventIdAndUserId(UUID eventId, UUID userId) {
+
+        return databaseClient.sql(SELECT_VIEW + "where event_id = :eventId and user_id = :userId for update")
+                .bind("eventId", bind(eventId))
+                .bind("userId", bind(userId))
+                .map(this::toView)
+                .one();
+    }
+
+    public Mono<Boolean> existsByEventIdAndUserId(UUID eventId, UUID userId) {
+
+        return databaseClient.sql("select 1 from payment where event_id = :eventId and user_id = :userId")
+                .bind("eventId", bind(eventId))
+                .bind("userId", bind(userId))
+                .map(row -> true)
+                .first()
+                .defaultIfEmpty(false);
+    }
+
+    public Flux<PaymentView> findViewsByEventId(UUID eventId) {
+        return findViews("event_id", eventId);
+    }
+
+    public Flux<PaymentView> findViewsByUserId(UUID userId) {
+        return findViews("user_id", userId);
+    }
+
+    public Flux<PaymentView> findViewsByEventId(UUID eventId, long offset, int limit) {
+        return findViews("event_id", eventId, offset, limit);
+    }
+
+    public Flux<PaymentView> findViewsByUserId(UUID userId, long offset, int limit) {
+        return findViews("user_id", userId, offset, limit);
+    }
+
+    public Flux<PaymentView> findViewsByEventIdAfter(UUID eventId, PaymentCursor after, int limit) {
+        return findViewsAfter("event_id", eventId, after, limit);
+    }
+
+    public Flux<PaymentView> findViewsByUserIdAfter(UUID userId, PaymentCursor after, int limit) {
+        return findViewsAfter("user_id", userId, after, limit);
+    }
+
+    // Enum columns are compared and assigned through CHAR casts: r2dbc-h2 binds strings as CLOB, which H2 will not
+    // convert to ENUM, and the casts are equally valid on MySQL
+    // A no-op on an existing (event_id, user_id), which it leaves locked like an insert would
+    public Mono<Long> insertIfAbsent(UUID id, UUID eventId, UUID userId, String username, BigDecimal amount,
+                                     PaymentType type, PaymentStatus status, LocalDateTime now) {
+
+        return databaseClient.sql("""
+                        INSERT INTO payment (id, event_id, user_id, username, amount, type, status, created_on, updated_on, version)
+                        VALUES (:id, :eventId, :userId, :username, :amount, CAST(:type AS CHAR(16)), CAST(:status AS CHAR(16)), :now, :now, 0)
+                        ON DUPLICATE KEY UPDATE id = id
+                        """)
+                .bind("id", bind(id))
+                .bind("eventId", bind(eventId))
+                .bind("userId", bind(userId))
+                .bind("username", Parameters.in(R2dbcType.VARCHAR, username))
+                .bind("amount", Parameters.in(R2dbcType.DECIMAL, amount))
+                .bind("type", type.name())
+                .bind("status", status.name())
+                .bind("now", now)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Long> update(UUID eventId, UUID userId, BigDecimal amount, PaymentType type, PaymentStatus status,
+                             LocalDateTime now) {
+
+        return databaseClient.sql("""
+                        update payment
+                        set amount = :amount, type = CAST(:type AS CHAR(16)), status = CAST(:status AS CHAR(16)),
+                            updated_on = :now, version = version + 1
+                        where event_id = :eventId and user_id = :userId
+                        """)
+                .bind("eventId", bind(eventId))
+                .bind("userId", bind(userId))
+                .bind("amount", Parameters.in(R2dbcType.DECIMAL, amount))
+                .bind("type", type.name())
+                .bind("status", status.name())
+                .bind("now", now)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Long> toggleStatus(UUID eventId, UUID userId, LocalDateTime now) {
+
+        return databaseClient.sql("""
+                        update payment
+                        set status = case when status = 'PENDING' then 'PAID' else 'PENDING' end,
+                            updated_on = :now,
+                            version = version + 1
+                        where event_id = :eventId and user_id = :userId
+                        """)
+                .bind("now", now)
+                .bind("eventId", bind(eventId))
+                .bind("userId", bind(userId))
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Long> transitionStatus(UUID eventId, UUID userId, Collection<PaymentStatus> from,
+                                       PaymentStatus target, LocalDateTime now) {
+
+        return databaseClient.sql("""
+                        update payment
+                        set status = cast(:target as char(16)), updated_on = :now, version = version + 1
+                        where event_id = :eventId and user_id = :userId and cast(status as char(16)) in (:from)
+                        """)
+                .bind("target", target.name())
+                .bind("now", now)
+                .bind("eventId", bind(eventId))
+                .bind("userId", bind(userId))
+                .bind("from", from.stream().map(PaymentStatus::name).toList())
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Flux<PaymentSummary> findSummaries(SummaryOwner ownerType, UUID ownerId) {
+
+        return databaseClient.sql("""
+                        select owner_type, owner_id, status, type, payment_count, amount_sum
+                        from payment_summary
+                        where cast(owner_type as char(16)) = :ownerType and owner_id = :ownerId
+                        """)
+                .bind("ownerType", ownerType.name())
+                .bind("ownerId", bind(ownerId))
+                .map(this::toSummary)
+                .all();
+    }
+
+    // All cells in one multi-row statement, in the key order PaymentSummaryChanges gives them
+    public Mono<Void> applySummaryChanges(PaymentSummaryChanges changes) {
+
+        List<PaymentSummary> deltas = changes.deltas();
+        if (deltas.isEmpty()) {
+            return Mono.empty();
+        }
+
+        StringJoiner values = new StringJoiner(", ");
+        for (int i = 0; i < deltas.size(); i++) {
+            values.add(("(CAST(:ownerType%1$d AS CHAR(16)), :ownerId%1$d, CAST(:status%1$d AS CHAR(16)), "
+                    + "CAST(:type%1$d AS CHAR(16)), :count%1$d, :amount%1$d)").formatted(i));
+        }
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("""
+                INSERT INTO payment_summary (owner_type, owner_id, status, type, payment_count, amount_sum)
+                VALUES %s
+                ON DUPLICATE KEY UPDATE
+                    payment_count = payment_count + VALUES(payment_count),
+                    amount_sum = amount_sum + VALUES(amount_sum)
+                """.formatted(values));
+        for (int i = 0; i < deltas.size(); i++) {
+            PaymentSummary delta = deltas.get(i);
+            PaymentSummaryKey key = delta.getId();
+            spec = spec.bind("ownerType" + i, key.getOwnerType().name())
+                    .bind("ownerId" + i, bind(key.getOwnerId()))
+                    .bind("status" + i, key.getStatus().name())
+                    .bind("type" + i, key.getType().name())
+                    .bind("count" + i, delta.getPaymentCount())
+                    .bind("amount" + i, delta.getAmountSum());
+        }
+
+        return spec.fetch().rowsUpdated().then();
+    }
+
+    public Mono<Long> insertChange(PaymentChange change) {
+
+        return databaseClient.sql("""
+                        INSERT INTO payment_change (id, change_type, event_id, user_id, amount, type, status, changed_on)
+                        VALUES (:id, CAST(:changeType AS CHAR(16)), :eventId, :userId, :amount,
+                                CAST(:type AS CHAR(16)), CAST(:status AS CHAR(16)), :changedOn)
+                        """)
+                .bind("id", bind(UuidV7.next()))
+                .bind("changeType", change.getChangeType().name())
+                .bind("eventId", bind(change.getEventId()))
+                .bind("userId", bind(change.getUserId()))
+                .bind("amount", Parameters.in(R2dbcType.DECIMAL, change.getAmount()))
+                .bind("type", change.getType().name())
+                .bind("status", change.getStatus().name())
+                .bind("changedOn", change.getChangedOn())
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private Flux<PaymentView> findViews(String column, UUID id) {
+
+        return databaseClient.sql(SELECT_VIEW + "where " + column + " = :id order by created_on, id")
+                .bind("id", bind(id))
+                .map(this::toView)
+                .all();
+    }
+
+    private Flux<PaymentView> findViews(String column, UUID id, long offset, int limit) {
+
+        return databaseClient.sql(SELECT_VIEW + "where " + column + " = :id order by created_on, id limit :limit offset :offset")
+                .bind("id", bind(id))
+                .bind("limit", limit)
+                .bind("offset", offset)
+                .map(this::toView)
+                .all();
+    }
+
+    private Flux<PaymentView> findViewsAfter(String column, UUID id, PaymentCursor after, int limit) {
+
+        if (after == null) {
+            return findViews(column, id, 0, limit);
+        }
+
+        return databaseClient.sql(SELECT_VIEW + "where " + column + " = :id"
+                        + " and (created_on > :createdOn or (created_on = :createdOn and id > :afterId))"
+                        + " order by created_on, id limit :limit")
+                .bind("id", bind(id))
+                .bind("createdOn", after.createdOn())
+                .bind("afterId", bind(after.id()))
+                .bind("limit", limit)
+                .map(this::toView)
+                .all();
+    }
+
+    private PaymentView toView(Readable row) {
+
+        String type = row.get("type", String.class);
+        String status = row.get("status", String.class);
+
+        return PaymentView.builder()
+                .id(uuid(row, "id"))
+                .eventId(uuid(row, "event_id"))
+                .userId(uuid(row, "user_id"))
+                .username(row.get("username", String.class))
+                .eventName(row.get("event_name", String.class))
+                .amount(row.get("amount", BigDecimal.class))
+                .type(type == null ? null : PaymentType.valueOf(type))
+                .status(status == null ? null : PaymentStatus.valueOf(status))
+                .createdOn(row.get("created_on", LocalDateTime.class))
+                .build();
+    }
+
+    private PaymentSummary toSummary(Readable row) {
+
+        PaymentSummaryKey key = new PaymentSummaryKey(
+                SummaryOwner.valueOf(row.get("owner_type", String.class)),
+                uuid(row, "owner_id"),
+                PaymentStatus.valueOf(row.get("status", String.class)),
+                PaymentType.valueOf(row.get("type", String.class)));
+
+        return PaymentSummary.builder()
+                .id(key)
+                .paymentCount(row.get("payment_count", Long.class))
+                .amountSum(row.get("amount_sum", BigDecimal.class))
+                .build();
+    }
+
+    private Object bind(UUID id) {
+
+        if (!binaryUuids) {
+            return id;
+        }
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+
+    private UUID uuid(Readable row, String column) {
+
+        if (!binaryUuids) {
+            return row.get(column, UUID.class);
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(row.get(column, byte[].class));
+        return new UUID(bytes.getLong(), bytes.getLong());
+    }
+}
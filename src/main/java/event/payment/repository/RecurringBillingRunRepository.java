@@ -0,0 +1,9 @@
+package event.payment.repository;
+
+import event.payment.model.RecurringBillingRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+
+public interface RecurringBillingRunRepository extends JpaRepository<RecurringBillingRun, LocalDate> {
+}
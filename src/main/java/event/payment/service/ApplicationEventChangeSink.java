@@ -0,0 +1,23 @@
+package event.payment.service;
+
+import event.payment.model.PaymentChange;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// In-process delivery: any @EventListener taking a PaymentChange receives each relayed change
+@Component
+public class ApplicationEventChangeSink implements PaymentChangeSink {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ApplicationEventChangeSink(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void publish(List<PaymentChange> changes) {
+        changes.forEach(eventPublisher::publishEvent);
+    }
+}
@@ -0,0 +1,267 @@
+package event.payment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import event.payment.config.PaymentProperties;
+import event.payment.exception.IdempotencyInFlightException;
+import event.payment.exception.IdempotencyKeyReuseException;
+import event.payment.exception.InvalidIdempotencyKeyException;
+import event.payment.model.IdempotencyRecord;
+import event.payment.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Runs a request at most once per Idempotency-Key and replays its response to duplicates. Duplicates on this node
+// wait on the in-flight future; duplicates on other nodes find the claim in the table and poll it.
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private static final long POLL_MILLIS = 50;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final PaymentProperties.Idempotency properties;
+
+    private final Cache<String, CompletableFuture<StoredResponse>> responses;
+    private final ScheduledExecutorService purger;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              TransactionTemplate transactionTemplate,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              PaymentProperties paymentProperties) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.properties = paymentProperties.getIdempotency();
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumKeys())
+                .expireAfterWrite(properties.getTimeToLive())
+                .build();
+        this.purger = startPurger();
+    }
+
+    public <T> Outcome<T> execute(String key, Object request, Class<T> responseType, Supplier<T> work) {
+
+        if (key.isBlank() || key.length() > 255) {
+            throw new InvalidIdempotencyKeyException(key);
+        }
+        String requestHash = hash(request);
+
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> inFlight = responses.asMap().putIfAbsent(key, mine);
+        if (inFlight != null) {
+            return replay(key, requestHash, await(key, inFlight), responseType);
+        }
+
+        try {
+            StoredResponse stored = resolve(key, requestHash, work);
+            mine.complete(stored);
+            return stored.replayed()
+                    ? replay(key, requestHash, stored, responseType)
+                    : count(new Outcome<>(read(stored.body(), responseType), false));
+        } catch (RuntimeException e) {
+            responses.asMap().remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purger.shutdownNow();
+    }
+
+    private StoredResponse resolve(String key, String requestHash, Supplier<?> work) {
+
+        long deadline = System.nanoTime() + properties.getInFlightTimeout().toNanos();
+
+        while (true) {
+            LocalDateTime now = LocalDateTime.now();
+            IdempotencyRecord existing = idempotencyRecordRepository.findById(key)
+                    .filter(record -> !isExpired(record, now))
+                    .orElse(null);
+
+            if (existing == null) {
+                if (claim(key, requestHash, now)) {
+                    return run(key, requestHash, now, work);
+                }
+                continue;
+            }
+            if (!existing.getRequestHash().equals(requestHash)) {
+                throw new IdempotencyKeyReuseException(key);
+            }
+            if (existing.getCompletedOn() != null) {
+                return new StoredResponse(existing.getRequestHash(), existing.getResponseBody(), true);
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IdempotencyInFlightException(key);
+            }
+            pause();
+        }
+    }
+
+    private boolean claim(String key, String requestHash, LocalDateTime now) {
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // An expired record or abandoned claim is replaced; a live one makes the INSERT fail
+                idempotencyRecordRepository.findById(key)
+                        .filter(record -> isExpired(record, now))
+                        .ifPresent(record -> idempotencyRecordRepository.deleteClaim(key, record.getCreatedOn()));
+                idempotencyRecordRepository.claim(key, requestHash, now);
+            });
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    // The work commits on its own, outside this claim, so a node dying in between leaves a claim that is taken
+    // over after payment.idempotency.claim-timeout and the request runs again
+    private StoredResponse run(String key, String requestHash, LocalDateTime claimedOn, Supplier<?> work) {
+
+        Object response;
+        try {
+            response = work.get();
+        } catch (RuntimeException e) {
+            transactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.deleteClaim(key, claimedOn));
+            throw e;
+        }
+
+        String body = write(response);
+        Integer completed = transactionTemplate.execute(status ->
+                idempotencyRecordRepository.complete(key, claimedOn, body, LocalDateTime.now()));
+        if (completed == null || completed == 0) {
+            log.warn("Claim for Idempotency-Key [{}] was taken over before its response was stored", key);
+        }
+
+        return new StoredResponse(requestHash, body, false);
+    }
+
+    private StoredResponse await(String key, CompletableFuture<StoredResponse> inFlight) {
+
+        try {
+            return inFlight.get(properties.getInFlightTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyInFlightException(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Idempotency-Key " + key, e);
+        }
+    }
+
+    private <T> Outcome<T> replay(String key, String requestHash, StoredResponse stored, Class<T> responseType) {
+
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyReuseException(key);
+        }
+        return count(new Outcome<>(read(stored.body(), responseType), true));
+    }
+
+    private <T> Outcome<T> count(Outcome<T> outcome) {
+
+        meterRegistry.counter("payment.idempotency.requests", "outcome", outcome.replayed() ? "replayed" : "executed")
+                .increment();
+        return outcome;
+    }
+
+    private boolean isExpired(IdempotencyRecord record, LocalDateTime now) {
+
+        return record.getCompletedOn() == null
+                ? record.getCreatedOn().isBefore(now.minus(properties.getClaimTimeout()))
+                : record.getCompletedOn().isBefore(now.minus(properties.getTimeToLive()));
+    }
+
+    private String hash(Object request) {
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint request", e);
+        }
+    }
+
+    private String write(Object response) {
+
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store response", e);
+        }
+    }
+
+    private <T> T read(String body, Class<T> responseType) {
+
+        try {
+            return objectMapper.readValue(body, responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not replay stored response", e);
+        }
+    }
+
+    private void pause() {
+
+        try {
+            Thread.sleep(POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an in-flight request", e);
+        }
+    }
+
+    private void purgeQuietly() {
+
+        try {
+            int purged = transactionTemplate.execute(status -> idempotencyRecordRepository
+                    .deleteCreatedBefore(LocalDateTime.now().minus(properties.getTimeToLive())));
+            log.debug("Purged {} expired idempotency records", purged);
+        } catch (RuntimeException e) {
+            log.warn("Purging expired idempotency records failed, retrying on the next interval", e);
+        }
+    }
+
+    private ScheduledExecutorService startPurger() {
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-idempotency-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getPurgeInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::purgeQuietly, interval, interval, TimeUnit.MILLISECONDS);
+
+        return executor;
+    }
+
+    public record Outcome<T>(T response, boolean replayed) {
+    }
+
+    private record StoredResponse(String requestHash, String body, boolean replayed) {
+    }
+}
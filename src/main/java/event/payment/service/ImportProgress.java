@@ -0,0 +1,33 @@
+package event.payment.service;
+
+import event.payment.model.BatchOutcome;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class ImportProgress {
+
+    private long processed;
+
+    private long created;
+
+    private long updated;
+
+    private long rejected;
+
+    private int chunks;
+
+    void add(List<BatchOutcome> outcomes) {
+
+        for (BatchOutcome outcome : outcomes) {
+            switch (outcome) {
+                case CREATED -> created++;
+                case UPDATED -> updated++;
+                case REJECTED -> rejected++;
+            }
+        }
+        processed += outcomes.size();
+        chunks++;
+    }
+}
@@ -0,0 +1,39 @@
+package event.payment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import event.payment.model.PaymentChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Writes each relayed change as one JSON line to the `payment.changes` logger. Silent unless that logger is at
+// DEBUG; routing it to its own file gives a local change log for testing consumers.
+@Component
+public class LogChangeSink implements PaymentChangeSink {
+
+    private static final Logger CHANGES = LoggerFactory.getLogger("payment.changes");
+
+    private final ObjectMapper objectMapper;
+
+    public LogChangeSink(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void publish(List<PaymentChange> changes) {
+
+        if (!CHANGES.isDebugEnabled()) {
+            return;
+        }
+        for (PaymentChange change : changes) {
+            try {
+                CHANGES.debug(objectMapper.writeValueAsString(change));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Could not serialize payment change " + change.getSequenceNumber(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package event.payment.service;
+
+import event.payment.config.CacheConfig;
+import event.payment.config.PaymentProperties;
+import event.payment.config.ReadRouting;
+import event.payment.model.Payment;
+import event.payment.model.PaymentArchive;
+import event.payment.model.PaymentChange;
+import event.payment.model.PaymentChangeType;
+import event.payment.model.PaymentKey;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentSummaryChanges;
+import event.payment.model.PaymentType;
+import event.payment.repository.PaymentChangeRepository;
+import event.payment.repository.PaymentRepository;
+import event.payment.repository.PaymentSummaryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Moves old settled payments from the hot `payment` table to `payment_archive`, one batch per transaction with a
+// pause in between. PAID MONTHLY payments are live subscriptions and stay hot. Totals count hot payments only, so a
+// pair posted again after archiving is counted once.
+@Slf4j
+@Component
+public class PaymentArchiver {
+
+    private static final List<ArchivableState> STATES = List.of(
+            new ArchivableState(PaymentStatus.PAID, PaymentType.SINGLE),
+            new ArchivableState(PaymentStatus.CANCELLED, PaymentType.SINGLE),
+            new ArchivableState(PaymentStatus.CANCELLED, PaymentType.MONTHLY));
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentSummaryRepository paymentSummaryRepository;
+    private final PaymentChangeRepository paymentChangeRepository;
+    private final StatusWriteBehindBuffer statusWriteBehindBuffer;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
+    private final ReadRouting readRouting;
+    private final MeterRegistry meterRegistry;
+    private final PaymentProperties.Archive properties;
+
+    private final ReentrantLock archiveLock = new ReentrantLock();
+    private final ScheduledExecutorService archiver;
+
+    public PaymentArchiver(PaymentRepository paymentRepository,
+                           PaymentSummaryRepository paymentSummaryRepository,
+                           PaymentChangeRepository paymentChangeRepository,
+                           StatusWriteBehindBuffer statusWriteBehindBuffer,
+                           EntityManager entityManager,
+                           TransactionTemplate transactionTemplate,
+                           CacheManager cacheManager,
+                           ReadRouting readRouting,
+                           MeterRegistry meterRegistry,
+                           PaymentProperties paymentProperties) {
+        this.paymentRepository = paymentRepository;
+        this.paymentSummaryRepository = paymentSummaryRepository;
+        this.paymentChangeRepository = paymentChangeRepository;
+        this.statusWriteBehindBuffer = statusWriteBehindBuffer;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheManager = cacheManager;
+        this.readRouting = readRouting;
+        this.meterRegistry = meterRegistry;
+        this.properties = paymentProperties.getArchive();
+        this.archiver = properties.isEnabled() ? startArchiver() : null;
+    }
+
+    // Returns the number of payments moved
+    public int archive() {
+        return archiveCreatedBefore(LocalDateTime.now().minus(properties.getAge()));
+    }
+
+    public int archiveCreatedBefore(LocalDateTime cutoff) {
+
+        archiveLock.lock();
+        try {
+            int archived = 0;
+            for (ArchivableState state : STATES) {
+                while (true) {
+                    List<PaymentKey> moved = transactionTemplate.execute(status -> moveBatch(state, cutoff));
+                    if (moved.isEmpty()) {
+                        break;
+                    }
+                    evict(moved);
+                    archived += moved.size();
+                    meterRegistry.counter("payment.archive.moved").increment(moved.size());
+                    pause();
+                }
+            }
+            return archived;
+        } finally {
+            archiveLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+
+        if (archiver != null) {
+            archiver.shutdownNow();
+        }
+    }
+
+    private List<PaymentKey> moveBatch(ArchivableState state, LocalDateTime cutoff) {
+
+        List<Payment> payments = paymentRepository.findByStatusAndTypeAndCreatedOnBeforeOrderByCreatedOnAsc(
+                state.status(), state.type(), cutoff, Limit.of(properties.getBatchSize()));
+        if (payments.isEmpty()) {
+            return List.of();
+        }
+
+        // Persisted directly: the ids are assigned, so save() would merge and SELECT each one first
+        LocalDateTime now = LocalDateTime.now();
+        payments.forEach(payment -> entityManager.persist(PaymentArchive.of(payment, now)));
+        paymentRepository.deleteAllInBatch(payments);
+
+        PaymentSummaryChanges changes = new PaymentSummaryChanges();
+        payments.forEach(changes::remove);
+        paymentSummaryRepository.apply(changes);
+        // The feed tells consumers the payment left the hot table and the totals, with its final state
+        paymentChangeRepository.saveAll(payments.stream()
+                .map(payment -> PaymentChange.of(payment, PaymentChangeType.ARCHIVED))
+                .toList());
+
+        List<PaymentKey> keys = payments.stream().map(PaymentKey::of).toList();
+        statusWriteBehindBuffer.discard(keys);
+        readRouting.written(keys);
+
+        return keys;
+    }
+
+    private void evict(List<PaymentKey> keys) {
+
+        Cache byEvent = cacheManager.getCache(CacheConfig.PAYMENTS_BY_EVENT);
+        Cache byUser = cacheManager.getCache(CacheConfig.PAYMENTS_BY_USER);
+        Cache single = cacheManager.getCache(CacheConfig.PAYMENT);
+
+        for (PaymentKey key : keys) {
+            byEvent.evict(key.eventId());
+            byUser.evict(key.userId());
+            single.evict(List.of(key.eventId(), key.userId()));
+        }
+    }
+
+    private void pause() {
+
+        try {
+            Thread.sleep(properties.getPause().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while archiving payments", e);
+        }
+    }
+
+    private void archiveQuietly() {
+
+        try {
+            int archived = archive();
+            log.info("Archived {} payments", archived);
+        } catch (RuntimeException e) {
+            log.warn("Archiving payments failed, retrying on the next interval", e);
+        }
+    }
+
+    private ScheduledExecutorService startArchiver() {
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::archiveQuietly, interval, interval, TimeUnit.MILLISECONDS);
+
+        return executor;
+    }
+
+    private record ArchivableState(PaymentStatus status, PaymentType type) {
+    }
+}
@@ -0,0 +1,131 @@
+package event.payment.service;
+
+import event.payment.config.PaymentProperties;
+import event.payment.model.PaymentChange;
+import event.payment.repository.PaymentChangeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Numbers committed outbox records and hands them to the sinks in batches
+@Slf4j
+@Component
+public class PaymentChangeRelay {
+
+    private final PaymentChangeRepository paymentChangeRepository;
+    private final List<PaymentChangeSink> sinks;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final PaymentProperties.Outbox properties;
+
+    private final ReentrantLock relayLock = new ReentrantLock();
+    private final ScheduledExecutorService relayer;
+
+    public PaymentChangeRelay(PaymentChangeRepository paymentChangeRepository,
+                              List<PaymentChangeSink> sinks,
+                              TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry,
+                              PaymentProperties paymentProperties) {
+        this.paymentChangeRepository = paymentChangeRepository;
+        this.sinks = sinks;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.properties = paymentProperties.getOutbox();
+        this.relayer = properties.isRelayEnabled() ? startRelayer() : null;
+    }
+
+    // Returns the number of changes handed to the sinks
+    public int relay() {
+
+        relayLock.lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> sequence());
+
+            List<PaymentChange> changes = paymentChangeRepository
+                    .findBySequenceNumberIsNotNullAndPublishedOnIsNullOrderBySequenceNumberAsc(
+                            Limit.of(properties.getBatchSize()));
+            if (changes.isEmpty()) {
+                return 0;
+            }
+
+            try {
+                sinks.forEach(sink -> sink.publish(changes));
+            } catch (RuntimeException e) {
+                meterRegistry.counter("payment.outbox.publishes", "outcome", "failed").increment();
+                throw e;
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            transactionTemplate.executeWithoutResult(status -> {
+                paymentChangeRepository.markPublished(changes.stream().map(PaymentChange::getId).toList(), now);
+                paymentChangeRepository.deletePublishedBefore(now.minus(properties.getRetention()));
+            });
+            meterRegistry.counter("payment.outbox.publishes", "outcome", "published").increment();
+            meterRegistry.counter("payment.outbox.changes").increment(changes.size());
+
+            return changes.size();
+        } finally {
+            relayLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+
+        if (relayer == null) {
+            return;
+        }
+        relayer.shutdown();
+        relayer.awaitTermination(properties.getRelayInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void sequence() {
+
+        // Sequence numbers are handed out only here, so their order is the order changes became visible
+        List<PaymentChange> unsequenced = paymentChangeRepository
+                .findBySequenceNumberIsNullOrderByChangedOnAscIdAsc(Limit.of(properties.getBatchSize()));
+        if (unsequenced.isEmpty()) {
+            return;
+        }
+
+        long next = paymentChangeRepository.findMaxSequenceNumber() + 1;
+        for (PaymentChange change : unsequenced) {
+            change.setSequenceNumber(next++);
+        }
+    }
+
+    private void relayQuietly() {
+
+        try {
+            // Keep relaying while full batches are waiting
+            while (relay() == properties.getBatchSize()) {
+                log.debug("Relayed a full batch of payment changes, continuing");
+            }
+        } catch (RuntimeException e) {
+            log.warn("Relaying payment changes failed, retrying on the next interval", e);
+        }
+    }
+
+    private ScheduledExecutorService startRelayer() {
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getRelayInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::relayQuietly, interval, interval, TimeUnit.MILLISECONDS);
+
+        return executor;
+    }
+}
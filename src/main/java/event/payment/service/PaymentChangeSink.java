@@ -0,0 +1,12 @@
+package event.payment.service;
+
+import event.payment.model.PaymentChange;
+
+import java.util.List;
+
+// Receives relayed changes in sequence order. Delivery is at-least-once: a batch is offered again to every sink
+// when any sink throws, so sinks should tolerate repeats of a sequence number.
+public interface PaymentChangeSink {
+
+    void publish(List<PaymentChange> changes);
+}
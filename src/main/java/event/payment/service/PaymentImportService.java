@@ -0,0 +1,91 @@
+package event.payment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import event.payment.config.PaymentProperties;
+import event.payment.exception.PaymentImportException;
+import event.payment.web.dto.PaymentRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Service
+public class PaymentImportService {
+
+    private final PaymentService paymentService;
+    private final ObjectReader ndjsonReader;
+    private final ObjectReader csvReader;
+    private final PaymentProperties paymentProperties;
+
+    public PaymentImportService(PaymentService paymentService,
+                                ObjectMapper objectMapper,
+                                PaymentProperties paymentProperties) {
+        this.paymentService = paymentService;
+        this.ndjsonReader = objectMapper.readerFor(PaymentRequest.class);
+        this.csvReader = new CsvMapper()
+                .findAndRegisterModules()
+                .readerFor(PaymentRequest.class)
+                .with(CsvSchema.emptySchema().withHeader());
+        this.paymentProperties = paymentProperties;
+    }
+
+    public ImportProgress importNdjson(InputStream body) throws IOException {
+
+        return importRows(ndjsonReader.readValues(body));
+    }
+
+    public ImportProgress importCsv(InputStream body) throws IOException {
+
+        return importRows(csvReader.readValues(body));
+    }
+
+    private ImportProgress importRows(MappingIterator<PaymentRequest> rows) throws IOException {
+
+        int chunkSize = paymentProperties.getBatch().getChunkSize();
+        ImportProgress progress = new ImportProgress();
+        List<PaymentRequest> chunk = new ArrayList<>(chunkSize);
+
+        try (rows) {
+            PaymentRequest row;
+            while ((row = nextRow(rows, progress)) != null) {
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    importChunk(chunk, progress);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, progress);
+        }
+        return progress;
+    }
+
+    private PaymentRequest nextRow(MappingIterator<PaymentRequest> rows, ImportProgress progress) throws IOException {
+
+        try {
+            return rows.hasNextValue() ? rows.nextValue() : null;
+        } catch (JsonProcessingException e) {
+            throw new PaymentImportException(progress.getProcessed(), e);
+        }
+    }
+
+    private void importChunk(List<PaymentRequest> chunk, ImportProgress progress) {
+
+        // Every chunk is committed in its own transaction, so memory and rollback scope stay bounded
+        progress.add(paymentService.upsertBatch(chunk));
+        chunk.clear();
+
+        log.info("Imported {} payments in {} chunks ({} created, {} updated, {} rejected)",
+                progress.getProcessed(), progress.getChunks(),
+                progress.getCreated(), progress.getUpdated(), progress.getRejected());
+    }
+}
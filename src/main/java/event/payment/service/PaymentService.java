@@ -1,71 +1,600 @@
 package event.payment.service;
 
+import event.payment.config.CacheConfig;
+import event.payment.config.PaymentProperties;
+import event.payment.config.ReadRouting;
+import event.payment.exception.InvalidBatchException;
+import event.payment.exception.InvalidLookupException;
+import event.payment.exception.PaymentNotFoundException;
+import event.payment.exception.PaymentTransitionException;
+import event.payment.model.BatchOutcome;
 import event.payment.model.Payment;
+import event.payment.model.PaymentChange;
+import event.payment.model.PaymentChangeType;
+import event.payment.model.PaymentCursor;
+import event.payment.model.PaymentKey;
+import event.payment.model.PaymentLookup;
+import event.payment.model.PaymentSummary;
+import event.payment.model.PaymentSummaryChanges;
+import event.payment.model.PaymentView;
 import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentTransition;
+import event.payment.model.SummaryOwner;
+import event.payment.model.UuidV7;
+import event.payment.repository.PaymentArchiveRepository;
+import event.payment.repository.PaymentChangeRepository;
 import event.payment.repository.PaymentRepository;
+import event.payment.repository.PaymentSummaryRepository;
+import event.payment.web.dto.PaymentLookupRequest;
 import event.payment.web.dto.PaymentRequest;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+@Timed(value = "payment.service", description = "PaymentService method latency")
 @Service
 public class PaymentService {
 
     private final PaymentRepository paymentRepository;
+    private final PaymentSummaryRepository paymentSummaryRepository;
+    private final PaymentChangeRepository paymentChangeRepository;
+    private final PaymentArchiveRepository paymentArchiveRepository;
+    private final EntityManager entityManager;
+    private final PaymentProperties paymentProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final StatusWriteBehindBuffer statusWriteBehindBuffer;
+    private final ReadRouting readRouting;
+    private final SingleFlight<UUID, List<PaymentView>> byUserFlight;
+    private final SingleFlight<UUID, List<PaymentView>> byEventFlight;
+    private final WriteGuardedCache byUserCache;
+    private final WriteGuardedCache byEventCache;
+    private final WriteGuardedCache paymentCache;
 
-    public PaymentService(PaymentRepository paymentRepository) {
+    public PaymentService(PaymentRepository paymentRepository,
+                          PaymentSummaryRepository paymentSummaryRepository,
+                          PaymentChangeRepository paymentChangeRepository,
+                          PaymentArchiveRepository paymentArchiveRepository,
+                          EntityManager entityManager,
+                          PaymentProperties paymentProperties,
+                          TransactionTemplate transactionTemplate,
+                          MeterRegistry meterRegistry,
+                          StatusWriteBehindBuffer statusWriteBehindBuffer,
+                          ReadRouting readRouting,
+                          CacheManager cacheManager) {
         this.paymentRepository = paymentRepository;
+        this.paymentSummaryRepository = paymentSummaryRepository;
+        this.paymentChangeRepository = paymentChangeRepository;
+        this.paymentArchiveRepository = paymentArchiveRepository;
+        this.entityManager = entityManager;
+        this.paymentProperties = paymentProperties;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.statusWriteBehindBuffer = statusWriteBehindBuffer;
+        this.readRouting = readRouting;
+        this.byUserFlight = new SingleFlight<>("byUser", meterRegistry);
+        this.byEventFlight = new SingleFlight<>("byEvent", meterRegistry);
+        this.byUserCache = new WriteGuardedCache(cacheManager.getCache(CacheConfig.PAYMENTS_BY_USER));
+        this.byEventCache = new WriteGuardedCache(cacheManager.getCache(CacheConfig.PAYMENTS_BY_EVENT));
+        this.paymentCache = new WriteGuardedCache(cacheManager.getCache(CacheConfig.PAYMENT));
+        readRouting.onCommitted(key -> {
+            byUserCache.written(key.userId());
+            byEventCache.written(key.eventId());
+            paymentCache.written(paymentCacheKey(key.eventId(), key.userId()));
+            byUserFlight.invalidate(key.userId());
+            byEventFlight.invalidate(key.eventId());
+        });
     }
 
-    public List<Payment> getAllByUserId(UUID userId) {
-        return paymentRepository.findAllByUserId(userId);
+    // Cache misses for the same user or event share one query. Not @Transactional, so callers waiting on a shared
+    // query do not each hold a connection; only the shared query takes one. The caches are read through
+    // WriteGuardedCache rather than @Cacheable, so a query overtaken by a committed write is not cached.
+    public List<PaymentView> getAllByUserId(UUID userId) {
+        return statusWriteBehindBuffer.overlay(byUserCache.get(userId, () -> byUserFlight.execute(userId,
+                () -> readRouting.readByUser(userId, () -> paymentRepository.findViewsByUserId(userId)))));
     }
 
-    public List<Payment> getAllByEventId(UUID eventId) {
-        return paymentRepository.findAllByEventId(eventId);
+    public List<PaymentView> getAllByEventId(UUID eventId) {
+        return statusWriteBehindBuffer.overlay(byEventCache.get(eventId, () -> byEventFlight.execute(eventId,
+                () -> readRouting.readByEvent(eventId, () -> paymentRepository.findViewsByEventId(eventId)))));
     }
 
+    // Archived payments are only read on request, so the combined listings are not cached. One transaction reads
+    // both tables, so a payment archived meanwhile is listed exactly once.
+    @Transactional(readOnly = true)
+    public List<PaymentView> getAllByUserIdIncludingArchived(UUID userId) {
+        return readRouting.readByUser(userId, () -> merge(paymentArchiveRepository.findViewsByUserId(userId),
+                statusWriteBehindBuffer.overlay(paymentRepository.findViewsByUserId(userId))));
+    }
+
+    @Transactional(readOnly = true)
+    public List<PaymentView> getAllByEventIdIncludingArchived(UUID eventId) {
+        return readRouting.readByEvent(eventId, () -> merge(paymentArchiveRepository.findViewsByEventId(eventId),
+                statusWriteBehindBuffer.overlay(paymentRepository.findViewsByEventId(eventId))));
+    }
+
+    // Many users, events and event and user pairs in one call, read with chunked IN queries in one transaction.
+    // The per-key caches are bypassed: most of a lookup of hundreds of keys would miss them anyway.
+    @Transactional(readOnly = true)
+    public PaymentLookup lookup(PaymentLookupRequest lookupRequest) {
+
+        Set<UUID> userIds = keys(lookupRequest.getUserIds());
+        Set<UUID> eventIds = keys(lookupRequest.getEventIds());
+        Set<PaymentKey> pairs = keys(lookupRequest.getPayments());
+
+        int maxKeys = paymentProperties.getLookup().getMaxKeys();
+        if (userIds.size() + eventIds.size() + pairs.size() > maxKeys) {
+            throw new InvalidLookupException("A lookup takes at most " + maxKeys + " keys");
+        }
+
+        Set<UUID> routedEventIds = new HashSet<>(eventIds);
+        Set<UUID> routedUserIds = new HashSet<>(userIds);
+        pairs.forEach(pair -> {
+            routedEventIds.add(pair.eventId());
+            routedUserIds.add(pair.userId());
+        });
+
+        return readRouting.readByKeys(routedEventIds, routedUserIds, () -> new PaymentLookup(
+                group(userIds, inChunks(userIds, paymentRepository::findViewsByUserIdIn), PaymentView::userId),
+                group(eventIds, inChunks(eventIds, paymentRepository::findViewsByEventIdIn), PaymentView::eventId),
+                findPairs(pairs)));
+    }
+
+    public Optional<PaymentView> findPayment(UUID eventId, UUID userId) {
+        return statusWriteBehindBuffer.overlay(paymentCache.get(paymentCacheKey(eventId, userId),
+                () -> readRouting.readByEvent(eventId,
+                        () -> paymentRepository.findViewByEventIdAndUserId(eventId, userId))));
+    }
+
+    // Same key as the {#eventId, #userId} of the @CacheEvict annotations
+    private static List<UUID> paymentCacheKey(UUID eventId, UUID userId) {
+        return List.of(eventId, userId);
+    }
+
+    @Transactional(readOnly = true)
+    public Slice<PaymentView> getPageByUserId(UUID userId, int page, int size) {
+        return readRouting.readByUser(userId, () -> paymentRepository.findViewsByUserId(userId, pageRequest(page, size)));
+    }
+
+    @Transactional(readOnly = true)
+    public Slice<PaymentView> getPageByEventId(UUID eventId, int page, int size) {
+        return readRouting.readByEvent(eventId,
+                () -> paymentRepository.findViewsByEventId(eventId, pageRequest(page, size)));
+    }
+
+    @Transactional(readOnly = true)
+    public Slice<PaymentView> getSliceByUserId(UUID userId, PaymentCursor after, int size) {
+
+        Limit limit = Limit.of(pageSize(size) + 1);
+        List<PaymentView> payments = readRouting.readByUser(userId, () -> after == null
+                ? paymentRepository.findViewsByUserIdOrderByCreatedOnAscIdAsc(userId, limit)
+                : paymentRepository.findViewsByUserIdAfter(userId, after.createdOn(), after.id(), limit));
+
+        return toSlice(payments, pageSize(size));
+    }
+
+    @Transactional(readOnly = true)
+    public Slice<PaymentView> getSliceByEventId(UUID eventId, PaymentCursor after, int size) {
+
+        Limit limit = Limit.of(pageSize(size) + 1);
+        List<PaymentView> payments = readRouting.readByEvent(eventId, () -> after == null
+                ? paymentRepository.findViewsByEventIdOrderByCreatedOnAscIdAsc(eventId, limit)
+                : paymentRepository.findViewsByEventIdAfter(eventId, after.createdOn(), after.id(), limit));
+
+        return toSlice(payments, pageSize(size));
+    }
+
+    @Transactional(readOnly = true)
+    public List<PaymentSummary> getSummaryByEventId(UUID eventId) {
+        return readRouting.readByEvent(eventId,
+                () -> paymentSummaryRepository.findAllByIdOwnerTypeAndIdOwnerId(SummaryOwner.EVENT, eventId));
+    }
+
+    @Transactional(readOnly = true)
+    public List<PaymentSummary> getSummaryByUserId(UUID userId) {
+        return readRouting.readByUser(userId,
+                () -> paymentSummaryRepository.findAllByIdOwnerTypeAndIdOwnerId(SummaryOwner.USER, userId));
+    }
+
+    // Relayed changes after the given sequence number, in sequence order
+    @Transactional(readOnly = true)
+    public Slice<PaymentChange> getChanges(long after, int size) {
+
+        List<PaymentChange> changes = readRouting.read(() -> paymentChangeRepository
+                .findBySequenceNumberGreaterThanOrderBySequenceNumberAsc(after, Limit.of(pageSize(size) + 1)));
+        boolean hasNext = changes.size() > pageSize(size);
+
+        return new SliceImpl<>(hasNext ? changes.subList(0, pageSize(size)) : changes,
+                PageRequest.of(0, pageSize(size)), hasNext);
+    }
+
+    @Transactional(readOnly = true)
+    public void exportByEventId(UUID eventId, Consumer<PaymentView> consumer) {
+
+        readRouting.readByEvent(eventId, () -> {
+            try (Stream<PaymentView> payments = paymentRepository.streamViewsByEventId(eventId)) {
+                payments.forEach(consumer);
+            }
+            return null;
+        });
+    }
+
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.PAYMENTS_BY_EVENT, key = "#paymentRequest.eventId"),
+            @CacheEvict(cacheNames = CacheConfig.PAYMENTS_BY_USER, key = "#paymentRequest.userId"),
+            @CacheEvict(cacheNames = CacheConfig.PAYMENT, key = "{#paymentRequest.eventId, #paymentRequest.userId}")
+    })
+    @Transactional
     public Payment upsertPayment(PaymentRequest paymentRequest) {
 
-        Payment payment = getPayment(paymentRequest.getEventId(), paymentRequest.getUserId());
+        List<PaymentKey> keys = List.of(new PaymentKey(paymentRequest.getEventId(), paymentRequest.getUserId()));
+        statusWriteBehindBuffer.discard(keys);
+        readRouting.written(keys);
 
-        if (payment != null) {
+        // Inserts the payment unless the event and user already have one. Either way the row then exists and is
+        // locked by this transaction, so the locking read takes no gap lock: concurrent first upserts of a key queue
+        // on its row instead of deadlocking on the key range, and each takes its summary delta from the state before it
+        UUID id = UuidV7.next();
+        LocalDateTime now = LocalDateTime.now();
+        paymentRepository.insertIfAbsent(
+                id,
+                paymentRequest.getEventId(),
+                paymentRequest.getUserId(),
+                paymentRequest.getUsername(),
+                paymentRequest.getAmount(),
+                paymentRequest.getType().name(),
+                paymentRequest.getStatus().name(),
+                now);
+        Payment payment = paymentRepository.findForUpdateByEventIdAndUserId(
+                paymentRequest.getEventId(), paymentRequest.getUserId()).orElseThrow();
+        boolean created = payment.getId().equals(id);
+
+        PaymentSummaryChanges changes = new PaymentSummaryChanges();
+        if (!created) {
+            // The locked row is updated in place; the commit writes it as one versioned UPDATE
+            changes.remove(payment);
             payment.setAmount(paymentRequest.getAmount());
             payment.setType(paymentRequest.getType());
             payment.setStatus(paymentRequest.getStatus());
-            payment.setUpdatedOn(LocalDateTime.now());
-        } else {
-            payment = Payment.builder()
-                    .userId(paymentRequest.getUserId())
-                    .username(paymentRequest.getUsername())
-                    .eventId(paymentRequest.getEventId())
-                    .amount(paymentRequest.getAmount())
-                    .status(paymentRequest.getStatus())
-                    .type(paymentRequest.getType())
-                    .createdOn(LocalDateTime.now())
-                    .updatedOn(LocalDateTime.now())
-                    .build();
+            payment.setUpdatedOn(now);
+        }
+        changes.add(payment);
+        paymentSummaryRepository.apply(changes);
+        paymentChangeRepository.save(
+                PaymentChange.of(payment, created ? PaymentChangeType.CREATED : PaymentChangeType.UPDATED));
+
+        countStatus("upsert", paymentRequest.getStatus());
+        return payment;
+    }
+
+    @CacheEvict(cacheNames = {CacheConfig.PAYMENTS_BY_EVENT, CacheConfig.PAYMENTS_BY_USER, CacheConfig.PAYMENT},
+            allEntries = true)
+    @Transactional
+    public List<BatchOutcome> upsertBatch(List<PaymentRequest> paymentRequests) {
+
+        int maxItems = paymentProperties.getBatch().getMaxItems();
+        if (paymentRequests.size() > maxItems) {
+            throw new InvalidBatchException("A batch takes at most " + maxItems + " items");
         }
-        return paymentRepository.save(payment);
+
+        int chunkSize = paymentProperties.getBatch().getChunkSize();
+        List<BatchOutcome> outcomes = new ArrayList<>(paymentRequests.size());
+        PaymentSummaryChanges changes = new PaymentSummaryChanges();
+        List<PaymentKey> keys = paymentRequests.stream()
+                .filter(this::isComplete)
+                .map(paymentRequest -> new PaymentKey(paymentRequest.getEventId(), paymentRequest.getUserId()))
+                .toList();
+        statusWriteBehindBuffer.discard(keys);
+        readRouting.written(keys);
+
+        for (int from = 0; from < paymentRequests.size(); from += chunkSize) {
+            List<PaymentRequest> chunk = paymentRequests.subList(from, Math.min(from + chunkSize, paymentRequests.size()));
+            outcomes.addAll(upsertChunk(chunk, changes));
+
+            // Send the chunk as JDBC batches and keep the persistence context bounded to one chunk
+            entityManager.flush();
+            entityManager.clear();
+        }
+
+        // Summary cells of the whole batch are written once, after the payments
+        paymentSummaryRepository.apply(changes);
+
+        outcomes.forEach(outcome -> meterRegistry.counter("payment.batch.items", "outcome", outcome.name()).increment());
+        return outcomes;
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.PAYMENTS_BY_EVENT, key = "#eventID"),
+            @CacheEvict(cacheNames = CacheConfig.PAYMENTS_BY_USER, key = "#userId"),
+            @CacheEvict(cacheNames = CacheConfig.PAYMENT, key = "{#eventID, #userId}")
+    })
     public Payment updateStatus(UUID eventID, UUID userId) {
 
-        Payment payment = getPayment(eventID, userId);
+        if (statusWriteBehindBuffer.isEnabled()) {
+            Payment payment = statusWriteBehindBuffer.toggle(eventID, userId);
+            countStatus("toggle", payment.getStatus());
+            return payment;
+        }
+
+        PaymentProperties.Retry retry = paymentProperties.getRetry();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Payment payment = transactionTemplate.execute(status -> toggleStatus(eventID, userId));
+                countStatus("toggle", payment.getStatus());
+                return payment;
+            } catch (OptimisticLockingFailureException e) {
+                meterRegistry.counter("payment.status.conflicts").increment();
+                if (attempt >= retry.getMaxAttempts()) {
+                    throw e;
+                }
+                backOff(retry.getBackoff().toMillis() * attempt);
+            }
+        }
+    }
+
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.PAYMENTS_BY_EVENT, key = "#eventId"),
+            @CacheEvict(cacheNames = CacheConfig.PAYMENTS_BY_USER, key = "#userId"),
+            @CacheEvict(cacheNames = CacheConfig.PAYMENT, key = "{#eventId, #userId}")
+    })
+    @Transactional
+    public void transition(UUID eventId, UUID userId, PaymentTransition transition) {
+
+        // The conditional update must see toggles that are still buffered
+        statusWriteBehindBuffer.flush(new PaymentKey(eventId, userId));
+        readRouting.written(List.of(new PaymentKey(eventId, userId)));
+        LocalDateTime now = LocalDateTime.now();
+
+        // One conditional update per allowed source status, so the one that matches tells the summary
+        // which cell the payment leaves; only CANCEL of a PAID payment needs a second statement
+        PaymentStatus previous = null;
+        for (PaymentStatus from : transition.getFrom()) {
+            if (paymentRepository.transitionStatus(eventId, userId, Set.of(from), transition.getTarget(), now) > 0) {
+                previous = from;
+                break;
+            }
+        }
+
+        if (previous == null) {
+            // Only a failed transition pays for the extra lookup that tells the two cases apart
+            if (!paymentRepository.existsByEventIdAndUserId(eventId, userId)) {
+                throw new PaymentNotFoundException(eventId, userId);
+            }
+            throw new PaymentTransitionException(eventId, userId, transition);
+        }
+
+        PaymentView payment = paymentRepository.findViewByEventIdAndUserId(eventId, userId).orElseThrow();
+        PaymentSummaryChanges changes = new PaymentSummaryChanges();
+        changes.remove(eventId, userId, previous, payment.type(), payment.amount());
+        changes.add(eventId, userId, transition.getTarget(), payment.type(), payment.amount());
+        paymentSummaryRepository.apply(changes);
+        paymentChangeRepository.save(PaymentChange.of(payment, PaymentChangeType.STATUS_CHANGED));
+
+        countStatus("transition", transition.getTarget());
+    }
+
+    private void countStatus(String operation, PaymentStatus status) {
+        meterRegistry.counter("payment.status.changes", "operation", operation, "status", status.name()).increment();
+    }
+
+    private Payment toggleStatus(UUID eventId, UUID userId) {
+
+        Payment payment = paymentRepository.findByEventIdAndUserId(eventId, userId)
+                .orElseThrow(() -> new PaymentNotFoundException(eventId, userId));
+        PaymentSummaryChanges changes = new PaymentSummaryChanges();
+        changes.remove(payment);
 
         if (payment.getStatus() == PaymentStatus.PENDING) {
             payment.setStatus(PaymentStatus.PAID);
         } else {
             payment.setStatus(PaymentStatus.PENDING);
         }
-        return paymentRepository.save(payment);
+        Payment saved = paymentRepository.save(payment);
+        readRouting.written(List.of(PaymentKey.of(saved)));
+
+        // The version check on the payment guards the delta: a lost race rolls both back
+        changes.add(saved);
+        paymentSummaryRepository.apply(changes);
+        paymentChangeRepository.save(PaymentChange.of(saved, PaymentChangeType.STATUS_CHANGED));
+        return saved;
+    }
+
+    private void backOff(long millis) {
+
+        try {
+            // Jitter keeps competing requests from retrying in lockstep
+            Thread.sleep(millis + ThreadLocalRandom.current().nextLong(millis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying status update", e);
+        }
+    }
+
+    private List<BatchOutcome> upsertChunk(List<PaymentRequest> chunk, PaymentSummaryChanges changes) {
+
+        LocalDateTime now = LocalDateTime.now();
+
+        // Like upsertPayment: insert the first request of each key unless the key is taken, then lock and read every
+        // key, so a key inserted concurrently is updated instead of failing the batch on the unique key
+        Map<PaymentKey, Payment> inserted = new LinkedHashMap<>();
+        for (PaymentRequest paymentRequest : chunk) {
+            if (isComplete(paymentRequest)) {
+                inserted.putIfAbsent(new PaymentKey(paymentRequest.getEventId(), paymentRequest.getUserId()),
+                        Payment.builder()
+                                .id(UuidV7.next())
+                                .userId(paymentRequest.getUserId())
+                                .username(paymentRequest.getUsername())
+                                .eventId(paymentRequest.getEventId())
+                                .amount(paymentRequest.getAmount())
+                                .status(paymentRequest.getStatus())
+                                .type(paymentRequest.getType())
+                                .createdOn(now)
+                                .updatedOn(now)
+                                .build());
+            }
+        }
+        paymentRepository.insertAllIfAbsent(inserted.values());
+        Map<PaymentKey, Payment> payments = lockExisting(inserted.keySet());
+
+        Set<PaymentKey> created = new HashSet<>();
+        List<PaymentChange> recorded = new ArrayList<>(chunk.size());
+        List<BatchOutcome> outcomes = new ArrayList<>(chunk.size());
+
+        for (PaymentRequest paymentRequest : chunk) {
+
+            if (!isComplete(paymentRequest)) {
+                outcomes.add(BatchOutcome.REJECTED);
+                continue;
+            }
+
+            PaymentKey key = new PaymentKey(paymentRequest.getEventId(), paymentRequest.getUserId());
+            Payment payment = payments.get(key);
+
+            if (payment.getId().equals(inserted.get(key).getId()) && created.add(key)) {
+                changes.add(payment);
+                recorded.add(PaymentChange.of(payment, PaymentChangeType.CREATED));
+                outcomes.add(BatchOutcome.CREATED);
+            } else {
+                // Locked rows are updated in place; the flush writes them as batched, versioned UPDATEs
+                changes.remove(payment);
+                payment.setAmount(paymentRequest.getAmount());
+                payment.setType(paymentRequest.getType());
+                payment.setStatus(paymentRequest.getStatus());
+                payment.setUpdatedOn(now);
+                changes.add(payment);
+                recorded.add(PaymentChange.of(payment, PaymentChangeType.UPDATED));
+                outcomes.add(BatchOutcome.UPDATED);
+            }
+        }
+        paymentChangeRepository.saveAll(recorded);
+
+        return outcomes;
+    }
+
+    private Map<PaymentKey, Payment> lockExisting(Collection<PaymentKey> keys) {
+
+        Map<UUID, Set<UUID>> userIdsByEvent = keys.stream()
+                .collect(Collectors.groupingBy(PaymentKey::eventId,
+                        Collectors.mapping(PaymentKey::userId, Collectors.toSet())));
+
+        Map<PaymentKey, Payment> payments = new HashMap<>();
+        userIdsByEvent.forEach((eventId, userIds) -> paymentRepository.findAllForUpdateByEventIdAndUserIdIn(eventId, userIds)
+                .forEach(payment -> payments.put(PaymentKey.of(payment), payment)));
+
+        return payments;
+    }
+
+    private boolean isComplete(PaymentRequest paymentRequest) {
+
+        return paymentRequest.getEventId() != null
+                && paymentRequest.getUserId() != null
+                && paymentRequest.getType() != null
+                && paymentRequest.getStatus() != null;
+    }
+
+    private PageRequest pageRequest(int page, int size) {
+        return PageRequest.of(Math.max(page, 0), pageSize(size), Sort.by("createdOn", "id"));
+    }
+
+    private int pageSize(int size) {
+        return Math.min(Math.max(size, 1), paymentProperties.getListing().getMaxPageSize());
+    }
+
+    private Slice<PaymentView> toSlice(List<PaymentView> payments, int size) {
+
+        // One extra row is fetched to tell whether another slice follows
+        boolean hasNext = payments.size() > size;
+        List<PaymentView> content = hasNext ? payments.subList(0, size) : payments;
+
+        return new SliceImpl<>(content, PageRequest.of(0, size), hasNext);
+    }
+
+    private static <K> Set<K> keys(Set<K> requested) {
+
+        if (requested == null) {
+            return Set.of();
+        }
+        if (requested.stream().anyMatch(Objects::isNull)) {
+            throw new InvalidLookupException("Lookup keys must not be null");
+        }
+        return requested;
+    }
+
+    private <K> List<PaymentView> inChunks(Collection<K> keys, Function<List<K>, List<PaymentView>> query) {
+
+        List<K> all = new ArrayList<>(keys);
+        int chunkSize = paymentProperties.getLookup().getChunkSize();
+        List<PaymentView> payments = new ArrayList<>();
+
+        for (int from = 0; from < all.size(); from += chunkSize) {
+            payments.addAll(query.apply(all.subList(from, Math.min(from + chunkSize, all.size()))));
+        }
+        return payments;
     }
 
-    private Payment getPayment(UUID eventId, UUID userId) {
+    // Every requested key is listed, with no payments when it has none
+    private static Map<UUID, List<PaymentView>> group(Set<UUID> keys, List<PaymentView> payments,
+                                                      Function<PaymentView, UUID> key) {
+
+        Map<UUID, List<PaymentView>> grouped = new LinkedHashMap<>();
+        keys.forEach(id -> grouped.put(id, new ArrayList<>()));
+        payments.forEach(payment -> grouped.get(key.apply(payment)).add(payment));
+
+        return grouped;
+    }
+
+    // One statement per chunk of pairs, however many events they span
+    private List<PaymentView> findPairs(Set<PaymentKey> pairs) {
+        return inChunks(pairs, paymentRepository::findViewsByPairs);
+    }
+
+    // Archived payments first, each part in its own query order. One payment per event and user: the hot one, or
+    // else the most recently created archived one, since a pair posted again after archiving has a new hot row
+    private List<PaymentView> merge(List<PaymentView> archived, List<PaymentView> hot) {
+
+        Map<PaymentKey, PaymentView> latestArchived = new HashMap<>();
+        archived.forEach(view -> latestArchived.merge(new PaymentKey(view.eventId(), view.userId()), view,
+                (listed, other) -> other.createdOn().isAfter(listed.createdOn()) ? other : listed));
+        hot.forEach(view -> latestArchived.remove(new PaymentKey(view.eventId(), view.userId())));
+
+        List<PaymentView> payments = new ArrayList<>(latestArchived.size() + hot.size());
+        archived.stream()
+                .filter(view -> latestArchived.get(new PaymentKey(view.eventId(), view.userId())) == view)
+                .forEach(payments::add);
+        payments.addAll(hot);
 
-        return paymentRepository.findByEventIdAndUserId(eventId, userId).orElse(null);
+        return payments;
     }
 }
 
@@ -0,0 +1,276 @@
+package event.payment.service;
+
+import event.payment.config.PaymentProperties;
+import event.payment.config.ReadRouting;
+import event.payment.exception.PaymentNotFoundException;
+import event.payment.exception.PaymentTransitionException;
+import event.payment.model.BatchOutcome;
+import event.payment.model.PaymentChange;
+import event.payment.model.PaymentChangeType;
+import event.payment.model.PaymentCursor;
+import event.payment.model.PaymentKey;
+import event.payment.model.PaymentLookup;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentSummary;
+import event.payment.model.PaymentSummaryChanges;
+import event.payment.model.PaymentTransition;
+import event.payment.model.PaymentView;
+import event.payment.model.SummaryOwner;
+import event.payment.model.UuidV7;
+import event.payment.repository.ReactivePaymentRepository;
+import event.payment.web.dto.PaymentLookupRequest;
+import event.payment.web.dto.PaymentRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@Profile("reactive")
+@Service
+public class ReactivePaymentService {
+
+    private final ReactivePaymentRepository paymentRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final PaymentProperties paymentProperties;
+    private final PaymentService paymentService;
+    private final PaymentImportService paymentImportService;
+    private final ReadRouting readRouting;
+    private final MeterRegistry meterRegistry;
+
+    public ReactivePaymentService(ReactivePaymentRepository paymentRepository,
+                                  TransactionalOperator transactionalOperator,
+                                  PaymentProperties paymentProperties,
+                                  PaymentService paymentService,
+                                  PaymentImportService paymentImportService,
+                                  ReadRouting readRouting,
+                                  MeterRegistry meterRegistry) {
+        this.paymentRepository = paymentRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.paymentProperties = paymentProperties;
+        this.paymentService = paymentService;
+        this.paymentImportService = paymentImportService;
+        this.readRouting = readRouting;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Flux<PaymentView> getAllByUserId(UUID userId) {
+        return paymentRepository.findViewsByUserId(userId);
+    }
+
+    public Flux<PaymentView> getAllByEventId(UUID eventId) {
+        return paymentRepository.findViewsByEventId(eventId);
+    }
+
+    public Mono<PaymentView> findPayment(UUID eventId, UUID userId) {
+        return paymentRepository.findViewByEventIdAndUserId(eventId, userId);
+    }
+
+    public Mono<List<PaymentSummary>> getSummaryByEventId(UUID eventId) {
+        return paymentRepository.findSummaries(SummaryOwner.EVENT, eventId).collectList();
+    }
+
+    public Mono<List<PaymentSummary>> getSummaryByUserId(UUID userId) {
+        return paymentRepository.findSummaries(SummaryOwner.USER, userId).collectList();
+    }
+
+    public Mono<Slice<PaymentView>> getPageByUserId(UUID userId, int page, int size) {
+
+        PageRequest pageRequest = pageRequest(page, size);
+        return paymentRepository.findViewsByUserId(userId, pageRequest.getOffset(), pageRequest.getPageSize() + 1)
+                .collectList()
+                .map(payments -> toSlice(payments, pageRequest));
+    }
+
+    public Mono<Slice<PaymentView>> getPageByEventId(UUID eventId, int page, int size) {
+
+        PageRequest pageRequest = pageRequest(page, size);
+        return paymentRepository.findViewsByEventId(eventId, pageRequest.getOffset(), pageRequest.getPageSize() + 1)
+                .collectList()
+                .map(payments -> toSlice(payments, pageRequest));
+    }
+
+    public Mono<Slice<PaymentView>> getSliceByUserId(UUID userId, PaymentCursor after, int size) {
+
+        PageRequest pageRequest = pageRequest(0, size);
+        return paymentRepository.findViewsByUserIdAfter(userId, after, pageRequest.getPageSize() + 1)
+                .collectList()
+                .map(payments -> toSlice(payments, pageRequest));
+    }
+
+    public Mono<Slice<PaymentView>> getSliceByEventId(UUID eventId, PaymentCursor after, int size) {
+
+        PageRequest pageRequest = pageRequest(0, size);
+        return paymentRepository.findViewsByEventIdAfter(eventId, after, pageRequest.getPageSize() + 1)
+                .collectList()
+                .map(payments -> toSlice(payments, pageRequest));
+    }
+
+    public Mono<PaymentView> upsertPayment(PaymentRequest paymentRequest) {
+
+        UUID eventId = paymentRequest.getEventId();
+        UUID userId = paymentRequest.getUserId();
+        PaymentSummaryChanges changes = new PaymentSummaryChanges();
+        UUID id = UuidV7.next();
+        LocalDateTime now = LocalDateTime.now();
+
+        // As in PaymentService: the insert leaves the row existing and locked, so the locking read takes no gap lock
+        return paymentRepository.insertIfAbsent(id, eventId, userId, paymentRequest.getUsername(),
+                        paymentRequest.getAmount(), paymentRequest.getType(), paymentRequest.getStatus(), now)
+                .then(paymentRepository.lockViewByEventIdAndUserId(eventId, userId))
+                .flatMap(locked -> {
+                    if (locked.id().equals(id)) {
+                        return record(changes, locked, PaymentChangeType.CREATED);
+                    }
+                    remove(changes, locked, locked.status());
+                    return paymentRepository.update(eventId, userId, paymentRequest.getAmount(),
+                                    paymentRequest.getType(), paymentRequest.getStatus(), now)
+                            .then(paymentRepository.findViewByEventIdAndUserId(eventId, userId))
+                            .flatMap(payment -> record(changes, payment, PaymentChangeType.UPDATED));
+                })
+                .as(transactionalOperator::transactional)
+                .doOnSuccess(ignored -> written(eventId, userId))
+                .doOnNext(payment -> countStatus("upsert", payment.status()));
+    }
+
+    // Bulk writes keep the JDBC batching path and run on the bounded elastic pool, off the event loop
+    public Mono<List<BatchOutcome>> upsertBatch(List<PaymentRequest> paymentRequests) {
+
+        return Mono.fromCallable(() -> paymentService.upsertBatch(paymentRequests))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // Archived payments are read through the blocking service, like the bulk paths, on the bounded elastic pool
+    public Flux<PaymentView> getAllByUserIdIncludingArchived(UUID userId) {
+
+        return Mono.fromCallable(() -> paymentService.getAllByUserIdIncludingArchived(userId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapIterable(payments -> payments);
+    }
+
+    public Flux<PaymentView> getAllByEventIdIncludingArchived(UUID eventId) {
+
+        return Mono.fromCallable(() -> paymentService.getAllByEventIdIncludingArchived(eventId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapIterable(payments -> payments);
+    }
+
+    public Mono<PaymentLookup> lookup(PaymentLookupRequest lookupRequest) {
+
+        return Mono.fromCallable(() -> paymentService.lookup(lookupRequest))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // The feed is read through the blocking service, like the bulk paths, on the bounded elastic pool
+    public Mono<Slice<PaymentChange>> getChanges(long after, int size) {
+
+        return Mono.fromCallable(() -> paymentService.getChanges(after, size))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<ImportProgress> importNdjson(InputStream body) {
+
+        return Mono.fromCallable(() -> paymentImportService.importNdjson(body))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<ImportProgress> importCsv(InputStream body) {
+
+        return Mono.fromCallable(() -> paymentImportService.importCsv(body))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // The locking read serializes concurrent toggles on the row lock instead of retrying, and gives the summary the
+    // status the payment leaves
+    public Mono<PaymentView> updateStatus(UUID eventId, UUID userId) {
+
+        PaymentSummaryChanges changes = new PaymentSummaryChanges();
+
+        return paymentRepository.lockViewByEventIdAndUserId(eventId, userId)
+                .switchIfEmpty(Mono.error(() -> new PaymentNotFoundException(eventId, userId)))
+                .doOnNext(previous -> remove(changes, previous, previous.status()))
+                .flatMap(previous -> paymentRepository.toggleStatus(eventId, userId, LocalDateTime.now()))
+                .then(paymentRepository.findViewByEventIdAndUserId(eventId, userId))
+                .flatMap(payment -> record(changes, payment, PaymentChangeType.STATUS_CHANGED))
+                .as(transactionalOperator::transactional)
+                .doOnSuccess(ignored -> written(eventId, userId))
+                .doOnNext(payment -> countStatus("toggle", payment.status()));
+    }
+
+    // One conditional UPDATE per allowed source status; the first that matches tells the summary which cell the
+    // payment leaves, and later ones are never issued
+    public Mono<Void> transition(UUID eventId, UUID userId, PaymentTransition transition) {
+
+        LocalDateTime now = LocalDateTime.now();
+        PaymentSummaryChanges changes = new PaymentSummaryChanges();
+
+        return Flux.fromIterable(transition.getFrom())
+                .concatMap(from -> paymentRepository.transitionStatus(
+                                eventId, userId, Set.of(from), transition.getTarget(), now)
+                        .filter(updated -> updated > 0)
+                        .map(updated -> from))
+                .next()
+                .flatMap(previous -> paymentRepository.findViewByEventIdAndUserId(eventId, userId)
+                        .doOnNext(payment -> remove(changes, payment, previous))
+                        .flatMap(payment -> record(changes, payment, PaymentChangeType.STATUS_CHANGED)))
+                .switchIfEmpty(paymentRepository.existsByEventIdAndUserId(eventId, userId)
+                        .flatMap(exists -> Mono.error(exists
+                                ? new PaymentTransitionException(eventId, userId, transition)
+                                : new PaymentNotFoundException(eventId, userId))))
+                .as(transactionalOperator::transactional)
+                .doOnSuccess(ignored -> {
+                    written(eventId, userId);
+                    countStatus("transition", transition.getTarget());
+                })
+                .then();
+    }
+
+    // Only once the transactional operator has committed: no transaction synchronization is active on the event loop,
+    // so ReadRouting would otherwise tell its listeners about a write that can still roll back
+    private void written(UUID eventId, UUID userId) {
+        readRouting.written(List.of(new PaymentKey(eventId, userId)));
+    }
+
+    private void remove(PaymentSummaryChanges changes, PaymentView payment, PaymentStatus status) {
+        changes.remove(payment.eventId(), payment.userId(), status, payment.type(), payment.amount());
+    }
+
+    // Adds the payment's new state to the summary and the outbox, in the caller's transaction
+    private Mono<PaymentView> record(PaymentSummaryChanges changes, PaymentView payment, PaymentChangeType changeType) {
+
+        changes.add(payment.eventId(), payment.userId(), payment.status(), payment.type(), payment.amount());
+        return paymentRepository.applySummaryChanges(changes)
+                .then(paymentRepository.insertChange(PaymentChange.of(payment, changeType)))
+                .thenReturn(payment);
+    }
+
+    private void countStatus(String operation, PaymentStatus status) {
+        meterRegistry.counter("payment.status.changes", "operation", operation, "status", status.name()).increment();
+    }
+
+    private PageRequest pageRequest(int page, int size) {
+
+        int pageSize = Math.min(Math.max(size, 1), paymentProperties.getListing().getMaxPageSize());
+        return PageRequest.of(Math.max(page, 0), pageSize);
+    }
+
+    private Slice<PaymentView> toSlice(List<PaymentView> payments, PageRequest pageRequest) {
+
+        // One extra row is fetched to tell whether another slice follows
+        boolean hasNext = payments.size() > pageRequest.getPageSize();
+        List<PaymentView> content = hasNext ? payments.subList(0, pageRequest.getPageSize()) : payments;
+
+        return new SliceImpl<>(content, pageRequest, hasNext);
+    }
+}
@@ -0,0 +1,282 @@
+package event.payment.service;
+
+import event.payment.config.CacheConfig;
+import event.payment.config.PaymentProperties;
+import event.payment.config.ReadRouting;
+import event.payment.model.Payment;
+import event.payment.model.PaymentChange;
+import event.payment.model.PaymentChangeType;
+import event.payment.model.PaymentKey;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentSummaryChanges;
+import event.payment.model.PaymentType;
+import event.payment.model.RecurringBillingRun;
+import event.payment.repository.PaymentChangeRepository;
+import event.payment.repository.PaymentRepository;
+import event.payment.repository.PaymentSummaryRepository;
+import event.payment.repository.RecurringBillingRunRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Starts each month's billing period for MONTHLY payments. A payment is one row per event and user, so the next
+// period is the same row set back from PAID to PENDING; each renewal is recorded in the outbox. That is the only
+// record of past periods and it is purged after payment.outbox.retention, so billing history must be kept by a
+// consumer of the change feed. One thread reads due ids in keyset chunks and a worker pool renews the chunks in
+// parallel, one transaction each. The checkpoint only advances past chunks that all committed, and renewing skips
+// payments updated since the period started, so a resumed or repeated run never renews a payment twice.
+@Slf4j
+@Component
+public class RecurringBillingJob {
+
+    private static final UUID FIRST_ID = new UUID(0, 0);
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentSummaryRepository paymentSummaryRepository;
+    private final PaymentChangeRepository paymentChangeRepository;
+    private final RecurringBillingRunRepository recurringBillingRunRepository;
+    private final StatusWriteBehindBuffer statusWriteBehindBuffer;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
+    private final ReadRouting readRouting;
+    private final MeterRegistry meterRegistry;
+    private final PaymentProperties.Recurring properties;
+    private final PaymentProperties.Retry retry;
+
+    private final ReentrantLock runLock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler;
+
+    public RecurringBillingJob(PaymentRepository paymentRepository,
+                               PaymentSummaryRepository paymentSummaryRepository,
+                               PaymentChangeRepository paymentChangeRepository,
+                               RecurringBillingRunRepository recurringBillingRunRepository,
+                               StatusWriteBehindBuffer statusWriteBehindBuffer,
+                               TransactionTemplate transactionTemplate,
+                               CacheManager cacheManager,
+                               ReadRouting readRouting,
+                               MeterRegistry meterRegistry,
+                               PaymentProperties paymentProperties) {
+        this.paymentRepository = paymentRepository;
+        this.paymentSummaryRepository = paymentSummaryRepository;
+        this.paymentChangeRepository = paymentChangeRepository;
+        this.recurringBillingRunRepository = recurringBillingRunRepository;
+        this.statusWriteBehindBuffer = statusWriteBehindBuffer;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheManager = cacheManager;
+        this.readRouting = readRouting;
+        this.meterRegistry = meterRegistry;
+        this.properties = paymentProperties.getRecurring();
+        this.retry = paymentProperties.getRetry();
+        this.scheduler = properties.isEnabled() ? startScheduler() : null;
+    }
+
+    // Renews every payment due in the given month, resuming from its checkpoint; returns the finished run
+    public RecurringBillingRun run(YearMonth period) {
+
+        runLock.lock();
+        try {
+            LocalDateTime periodStart = period.atDay(1).atStartOfDay();
+            RecurringBillingRun run = transactionTemplate.execute(status -> recurringBillingRunRepository
+                    .findById(periodStart.toLocalDate())
+                    .orElseGet(() -> recurringBillingRunRepository.save(RecurringBillingRun.builder()
+                            .period(periodStart.toLocalDate())
+                            .startedOn(LocalDateTime.now())
+                            .build())));
+            if (run.getCompletedOn() != null) {
+                return run;
+            }
+
+            // Buffered toggles are written first, so they count as updates made in the period
+            statusWriteBehindBuffer.flush();
+
+            try {
+                renewFrom(run, periodStart);
+            } catch (RuntimeException e) {
+                meterRegistry.counter("payment.recurring.runs", "outcome", "failed").increment();
+                throw e;
+            }
+
+            run.setCompletedOn(LocalDateTime.now());
+            save(run);
+            meterRegistry.counter("payment.recurring.runs", "outcome", "completed").increment();
+            log.info("Renewed {} MONTHLY payments for {}", run.getRenewed(), period);
+
+            return run;
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void renewFrom(RecurringBillingRun run, LocalDateTime periodStart) {
+
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(properties.getWorkers(), runnable -> {
+            Thread thread = new Thread(runnable, "payment-recurring-billing-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Chunks in id order; the reader stays at most two chunks per worker ahead of the oldest unfinished one
+        Deque<Chunk> submitted = new ArrayDeque<>();
+        int maxSubmitted = properties.getWorkers() * 2;
+
+        try {
+            UUID after = run.getCheckpoint() != null ? run.getCheckpoint() : FIRST_ID;
+            while (true) {
+                List<UUID> ids = paymentRepository.findIdsDueForRenewal(periodStart, after, Limit.of(properties.getChunkSize()));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                after = ids.get(ids.size() - 1);
+                submitted.add(new Chunk(after, workers.submit(() -> renewWithRetry(ids, periodStart))));
+
+                while (!submitted.isEmpty() && (submitted.size() >= maxSubmitted || submitted.peek().renewed().isDone())) {
+                    checkpoint(run, submitted.poll());
+                }
+            }
+            while (!submitted.isEmpty()) {
+                checkpoint(run, submitted.poll());
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private void checkpoint(RecurringBillingRun run, Chunk chunk) {
+
+        int renewed;
+        try {
+            renewed = chunk.renewed().get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while renewing MONTHLY payments", e);
+        }
+
+        run.setCheckpoint(chunk.lastId());
+        run.setRenewed(run.getRenewed() + renewed);
+        save(run);
+    }
+
+    private int renewWithRetry(List<UUID> ids, LocalDateTime periodStart) {
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<PaymentKey> renewed = transactionTemplate.execute(status -> renew(ids, periodStart));
+                evict(renewed);
+                meterRegistry.counter("payment.recurring.renewed").increment(renewed.size());
+                return renewed.size();
+            } catch (OptimisticLockingFailureException e) {
+                // A concurrent write changed a payment of this chunk; the retry reloads and re-checks the chunk
+                if (attempt >= retry.getMaxAttempts()) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private List<PaymentKey> renew(List<UUID> ids, LocalDateTime periodStart) {
+
+        LocalDateTime now = LocalDateTime.now();
+        PaymentSummaryChanges changes = new PaymentSummaryChanges();
+        List<PaymentChange> recorded = new ArrayList<>(ids.size());
+        List<PaymentKey> renewed = new ArrayList<>(ids.size());
+
+        // Managed entities are updated in place; the commit flushes them as batched, versioned UPDATEs
+        for (Payment payment : paymentRepository.findAllById(ids)) {
+            if (!isDue(payment, periodStart)) {
+                continue;
+            }
+            changes.remove(payment);
+            payment.setStatus(PaymentStatus.PENDING);
+            payment.setUpdatedOn(now);
+            changes.add(payment);
+            recorded.add(PaymentChange.of(payment, PaymentChangeType.STATUS_CHANGED));
+            renewed.add(PaymentKey.of(payment));
+        }
+        paymentSummaryRepository.apply(changes);
+        paymentChangeRepository.saveAll(recorded);
+        readRouting.written(renewed);
+
+        return renewed;
+    }
+
+    private static boolean isDue(Payment payment, LocalDateTime periodStart) {
+
+        return payment.getType() == PaymentType.MONTHLY
+                && payment.getStatus() == PaymentStatus.PAID
+                && payment.getUpdatedOn().isBefore(periodStart);
+    }
+
+    private void save(RecurringBillingRun run) {
+        transactionTemplate.executeWithoutResult(status -> recurringBillingRunRepository.save(run));
+    }
+
+    private void evict(List<PaymentKey> keys) {
+
+        Cache byEvent = cacheManager.getCache(CacheConfig.PAYMENTS_BY_EVENT);
+        Cache byUser = cacheManager.getCache(CacheConfig.PAYMENTS_BY_USER);
+        Cache single = cacheManager.getCache(CacheConfig.PAYMENT);
+
+        for (PaymentKey key : keys) {
+            byEvent.evict(key.eventId());
+            byUser.evict(key.userId());
+            single.evict(List.of(key.eventId(), key.userId()));
+        }
+    }
+
+    private void runDueQuietly() {
+
+        try {
+            run(YearMonth.now());
+        } catch (RuntimeException e) {
+            log.warn("Recurring billing run failed, resuming from its checkpoint on the next check", e);
+        }
+    }
+
+    private ScheduledExecutorService startScheduler() {
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-recurring-billing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getCheckInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::runDueQuietly, interval, interval, TimeUnit.MILLISECONDS);
+
+        return executor;
+    }
+
+    private record Chunk(UUID lastId, Future<Integer> renewed) {
+    }
+}
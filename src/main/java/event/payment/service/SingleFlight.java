@@ -0,0 +1,59 @@
+package event.payment.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+// Concurrent calls for the same key share one in-flight load and its result. Nothing is kept once the load
+// finishes, so a call arriving afterwards loads again (or hits the cache in front of it). A write committed while
+// a load runs ends the sharing: that load may have read before the write, so later calls start a load of their own.
+class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter coalesced;
+
+    SingleFlight(String query, MeterRegistry meterRegistry) {
+        this.executed = meterRegistry.counter("payment.single_flight.calls", "query", query, "outcome", "executed");
+        this.coalesced = meterRegistry.counter("payment.single_flight.calls", "query", query, "outcome", "coalesced");
+        meterRegistry.gauge("payment.single_flight.in_flight", Tags.of("query", query), inFlight, ConcurrentMap::size);
+    }
+
+    V execute(K key, Supplier<V> loader) {
+
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> shared = inFlight.putIfAbsent(key, mine);
+
+        if (shared != null) {
+            coalesced.increment();
+            try {
+                return shared.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        executed.increment();
+        try {
+            V value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // Callers already waiting keep the load they joined
+    void invalidate(K key) {
+        inFlight.remove(key);
+    }
+}
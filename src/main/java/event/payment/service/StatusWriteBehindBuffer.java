@@ -0,0 +1,505 @@
+package event.payment.service;
+
+import event.payment.config.CacheConfig;
+import event.payment.config.PaymentProperties;
+import event.payment.config.ReadRouting;
+import event.payment.exception.PaymentNotFoundException;
+import event.payment.exception.StatusChangeInDoubtException;
+import event.payment.exception.StatusChangeWithdrawnException;
+import event.payment.model.Payment;
+import event.payment.model.PaymentChange;
+import event.payment.model.PaymentChangeType;
+import event.payment.model.PaymentKey;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentSummaryChanges;
+import event.payment.model.PaymentView;
+import event.payment.repository.PaymentChangeRepository;
+import event.payment.repository.PaymentRepository;
+import event.payment.repository.PaymentSummaryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// In-memory authoritative status for toggled payments. Repeated toggles of a payment between two flushes
+// collapse into one UPDATE, and a flush writes all pending payments in one JDBC-batched transaction.
+@Slf4j
+@Component
+public class StatusWriteBehindBuffer {
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentSummaryRepository paymentSummaryRepository;
+    private final PaymentChangeRepository paymentChangeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
+    private final ReadRouting readRouting;
+    private final MeterRegistry meterRegistry;
+    private final PaymentProperties.WriteBehind properties;
+
+    // Plain maps behind a ReentrantLock rather than synchronized, so virtual threads do not pin while waiting
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Map<PaymentKey, PendingStatus> pending = new HashMap<>();
+    private final Map<PaymentKey, PendingStatus> flushing = new HashMap<>();
+    // Payments being read by toggles; a write that commits meanwhile makes those reads stale
+    private final Map<PaymentKey, Reads> reading = new HashMap<>();
+
+    private final ScheduledExecutorService flusher;
+
+    public StatusWriteBehindBuffer(PaymentRepository paymentRepository,
+                                   PaymentSummaryRepository paymentSummaryRepository,
+                                   PaymentChangeRepository paymentChangeRepository,
+                                   TransactionTemplate transactionTemplate,
+                                   CacheManager cacheManager,
+                                   ReadRouting readRouting,
+                                   MeterRegistry meterRegistry,
+                                   PaymentProperties paymentProperties) {
+        this.paymentRepository = paymentRepository;
+        this.paymentSummaryRepository = paymentSummaryRepository;
+        this.paymentChangeRepository = paymentChangeRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheManager = cacheManager;
+        this.readRouting = readRouting;
+        this.meterRegistry = meterRegistry;
+        this.properties = paymentProperties.getWriteBehind();
+        this.flusher = properties.isEnabled() ? startFlusher() : null;
+
+        meterRegistry.gauge("payment.write_behind.pending", pending, Map::size);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public Payment toggle(UUID eventId, UUID userId) {
+
+        PaymentKey key = new PaymentKey(eventId, userId);
+        Payment loaded = null;
+        Reads reads = null;
+        long generation = 0;
+        Payment payment = null;
+        CompletableFuture<Void> flushed = null;
+
+        while (payment == null) {
+            lock.lock();
+            try {
+                if (reads != null) {
+                    // A write committed since the read started, so the status read may be outdated: read again
+                    if (reads.generation != generation) {
+                        loaded = null;
+                    }
+                    release(key, reads);
+                    reads = null;
+                }
+
+                PendingStatus buffered = pending.get(key);
+                PendingStatus base = buffered != null ? buffered : flushing.get(key);
+
+                if (base != null || loaded != null) {
+                    payment = toggled(base != null ? base.payment() : loaded);
+                    flushed = buffered != null ? buffered.flushed() : new CompletableFuture<>();
+                    pending.put(key, new PendingStatus(payment, flushed));
+
+                    if (buffered != null) {
+                        meterRegistry.counter("payment.write_behind.coalesced").increment();
+                    }
+                    if (pending.size() >= properties.getMaxPending()) {
+                        flusher.execute(this::flushQuietly);
+                    }
+                } else {
+                    reads = reading.computeIfAbsent(key, ignored -> new Reads());
+                    reads.count++;
+                    generation = reads.generation;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (payment == null) {
+                // Only the first toggle since the last flush reads the payment, and never under the lock
+                try {
+                    loaded = paymentRepository.findByEventIdAndUserId(eventId, userId)
+                            .orElseThrow(() -> new PaymentNotFoundException(eventId, userId));
+                } catch (RuntimeException e) {
+                    lock.lock();
+                    try {
+                        release(key, reads);
+                    } finally {
+                        lock.unlock();
+                    }
+                    throw e;
+                }
+            }
+        }
+
+        return acknowledge(key, payment, flushed);
+    }
+
+    // Until they are flushed the buffered statuses are the current ones, so reads show them over what they read
+    public List<PaymentView> overlay(List<PaymentView> payments) {
+
+        if (!isEnabled() || payments.isEmpty()) {
+            return payments;
+        }
+        lock.lock();
+        try {
+            if (pending.isEmpty() && flushing.isEmpty()) {
+                return payments;
+            }
+            return payments.stream().map(this::overlaid).toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Optional<PaymentView> overlay(Optional<PaymentView> payment) {
+        return payment.map(view -> overlay(List.of(view)).get(0));
+    }
+
+    // A direct write sets the status explicitly, so buffered toggles it supersedes are dropped once it commits;
+    // a write that rolls back supersedes nothing
+    public void discard(Collection<PaymentKey> keys) {
+
+        afterCompletion(committed -> {
+            if (!committed) {
+                return;
+            }
+            lock.lock();
+            try {
+                for (PaymentKey key : keys) {
+                    complete(pending.remove(key), null);
+                    flushing.remove(key);
+                    invalidate(key);
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    // Writes the buffered status of one payment inside the caller's transaction, ahead of a conditional update.
+    // Until that transaction completes the entry stays in flushing: it is acknowledged on commit and buffered again
+    // on rollback, so a caller that fails does not lose the toggle.
+    public void flush(PaymentKey key) {
+
+        flushLock.lock();
+        try {
+            PendingStatus entry;
+            lock.lock();
+            try {
+                entry = pending.remove(key);
+                if (entry != null) {
+                    flushing.put(key, entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (entry == null) {
+                // The caller is about to write the payment itself
+                afterCompletion(committed -> {
+                    if (committed) {
+                        invalidate(key);
+                    }
+                });
+            } else {
+                Map<PaymentKey, PendingStatus> batch = Map.of(key, entry);
+                transactionTemplate.executeWithoutResult(status -> {
+                    write(batch);
+                    afterCompletion(committed -> {
+                        if (committed) {
+                            flushed(batch);
+                        } else {
+                            requeue(batch);
+                        }
+                    });
+                });
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public void flush() {
+
+        flushLock.lock();
+        try {
+            Map<PaymentKey, PendingStatus> batch;
+            lock.lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = new HashMap<>(pending);
+                pending.clear();
+                flushing.putAll(batch);
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(batch));
+            } catch (RuntimeException e) {
+                requeue(batch);
+                meterRegistry.counter("payment.write_behind.flushes", "outcome", "failed").increment();
+                throw e;
+            }
+
+            flushed(batch);
+            meterRegistry.counter("payment.write_behind.flushes", "outcome", "committed").increment();
+            meterRegistry.counter("payment.write_behind.rows").increment(batch.size());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(properties.getAckTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        flush();
+        log.info("Flushed buffered status changes on shutdown");
+    }
+
+    private void write(Map<PaymentKey, PendingStatus> batch) {
+
+        LocalDateTime now = LocalDateTime.now();
+        PaymentSummaryChanges changes = new PaymentSummaryChanges();
+        List<PaymentChange> recorded = new ArrayList<>(batch.size());
+        Map<UUID, Set<UUID>> userIdsByEvent = batch.keySet().stream()
+                .collect(Collectors.groupingBy(PaymentKey::eventId,
+                        Collectors.mapping(PaymentKey::userId, Collectors.toSet())));
+
+        // Managed entities are updated in place; the commit flushes them as batched, versioned UPDATEs
+        userIdsByEvent.forEach((eventId, userIds) -> paymentRepository.findAllByEventIdAndUserIdIn(eventId, userIds)
+                .forEach(payment -> {
+                    changes.remove(payment);
+                    payment.setStatus(batch.get(PaymentKey.of(payment)).payment().getStatus());
+                    payment.setUpdatedOn(now);
+                    changes.add(payment);
+                    recorded.add(PaymentChange.of(payment, PaymentChangeType.STATUS_CHANGED));
+                }));
+        paymentSummaryRepository.apply(changes);
+        paymentChangeRepository.saveAll(recorded);
+        readRouting.written(batch.keySet());
+    }
+
+    private void flushed(Map<PaymentKey, PendingStatus> batch) {
+
+        lock.lock();
+        try {
+            batch.forEach(flushing::remove);
+            batch.keySet().forEach(this::invalidate);
+        } finally {
+            lock.unlock();
+        }
+        evict(batch.keySet());
+        batch.values().forEach(entry -> complete(entry, null));
+    }
+
+    private PaymentView overlaid(PaymentView view) {
+
+        PaymentKey key = new PaymentKey(view.eventId(), view.userId());
+        PendingStatus buffered = pending.containsKey(key) ? pending.get(key) : flushing.get(key);
+        if (buffered == null || buffered.payment().getStatus() == view.status()) {
+            return view;
+        }
+        return new PaymentView(view.id(), view.eventId(), view.userId(), view.username(), view.eventName(),
+                view.amount(), view.type(), buffered.payment().getStatus(), view.createdOn());
+    }
+
+    // Called under the lock once a write of the payment has committed
+    private void invalidate(PaymentKey key) {
+
+        Reads reads = reading.get(key);
+        if (reads != null) {
+            reads.generation++;
+        }
+    }
+
+    private void release(PaymentKey key, Reads reads) {
+
+        if (--reads.count == 0) {
+            reading.remove(key, reads);
+        }
+    }
+
+    private void requeue(Map<PaymentKey, PendingStatus> batch) {
+
+        lock.lock();
+        try {
+            batch.forEach((key, entry) -> {
+                // Skip payments discarded by a direct write while the flush was running
+                if (!flushing.remove(key, entry)) {
+                    return;
+                }
+                PendingStatus newer = pending.putIfAbsent(key, entry);
+                if (newer != null) {
+                    newer.flushed().whenComplete((ignored, e) -> complete(entry, e));
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Payment acknowledge(PaymentKey key, Payment payment, CompletableFuture<Void> flushed) {
+
+        if (!properties.isDurableOnAck()) {
+            return payment;
+        }
+
+        try {
+            try {
+                flushed.get(properties.getAckTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                withdraw(key, flushed);
+                flushed.get();
+            }
+            return payment;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for status change to be persisted", e);
+        }
+    }
+
+    // A timed-out toggle that no flush has picked up yet is taken out of the buffer, together with the toggles
+    // coalesced with it, so the caller's error means it was not applied and a retry toggles exactly once. Once a
+    // flush holds it, it commits or is buffered again and its outcome is not known yet.
+    private void withdraw(PaymentKey key, CompletableFuture<Void> flushed) {
+
+        lock.lock();
+        try {
+            PendingStatus buffered = pending.get(key);
+            if (buffered != null && buffered.flushed() == flushed) {
+                pending.remove(key);
+                complete(buffered, new StatusChangeWithdrawnException(key.eventId(), key.userId(),
+                        properties.getAckTimeout()));
+                meterRegistry.counter("payment.write_behind.acks", "outcome", "withdrawn").increment();
+            } else if (!flushed.isDone()) {
+                meterRegistry.counter("payment.write_behind.acks", "outcome", "in_doubt").increment();
+                throw new StatusChangeInDoubtException(key.eventId(), key.userId(), properties.getAckTimeout());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict(Set<PaymentKey> keys) {
+
+        Cache byEvent = cacheManager.getCache(CacheConfig.PAYMENTS_BY_EVENT);
+        Cache byUser = cacheManager.getCache(CacheConfig.PAYMENTS_BY_USER);
+        Cache single = cacheManager.getCache(CacheConfig.PAYMENT);
+
+        for (PaymentKey key : keys) {
+            byEvent.evict(key.eventId());
+            byUser.evict(key.userId());
+            single.evict(List.of(key.eventId(), key.userId()));
+        }
+    }
+
+    private void flushQuietly() {
+
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Flushing buffered status changes failed, retrying on the next interval", e);
+        }
+    }
+
+    private ScheduledExecutorService startFlusher() {
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getFlushInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+
+        return executor;
+    }
+
+    // Runs once the caller's transaction commits or rolls back, or right away outside a transaction
+    private static void afterCompletion(Consumer<Boolean> callback) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            callback.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                callback.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    private static Payment toggled(Payment payment) {
+
+        return Payment.builder()
+                .id(payment.getId())
+                .eventId(payment.getEventId())
+                .userId(payment.getUserId())
+                .username(payment.getUsername())
+                .eventName(payment.getEventName())
+                .amount(payment.getAmount())
+                .type(payment.getType())
+                .status(payment.getStatus() == PaymentStatus.PENDING ? PaymentStatus.PAID : PaymentStatus.PENDING)
+                .createdOn(payment.getCreatedOn())
+                .updatedOn(payment.getUpdatedOn())
+                .version(payment.getVersion())
+                .build();
+    }
+
+    private static void complete(PendingStatus entry, Throwable failure) {
+
+        if (entry == null) {
+            return;
+        }
+        if (failure == null) {
+            entry.flushed().complete(null);
+        } else {
+            entry.flushed().completeExceptionally(failure);
+        }
+    }
+
+    private record PendingStatus(Payment payment, CompletableFuture<Void> flushed) {
+    }
+
+    private static final class Reads {
+
+        private int count;
+        private long generation;
+    }
+}
@@ -0,0 +1,52 @@
+package event.payment.service;
+
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+// Read-through access to one cache that a read overtaken by a write never fills. A read notes the write generation
+// of its key before querying and only caches its result if no write of the key committed meanwhile; a write bumps the
+// generation at commit, before its eviction runs. Otherwise a read that queried before the commit could put its
+// result back after the eviction, to be served until it expires. Keys share a fixed set of generations by hash, so
+// a collision only skips a put.
+class WriteGuardedCache {
+
+    private static final int SLOTS = 1024;
+
+    private final Cache cache;
+    private final AtomicLongArray generations = new AtomicLongArray(SLOTS);
+
+    WriteGuardedCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T get(Object key, Supplier<T> query) {
+
+        int slot = slot(key);
+        long generation = generations.get(slot);
+        Cache.ValueWrapper cached = cache.get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+
+        T value = query.get();
+        if (generations.get(slot) == generation) {
+            cache.put(key, value);
+            // A write committing between the check and the put may have evicted before the put landed
+            if (generations.get(slot) != generation) {
+                cache.evict(key);
+            }
+        }
+        return value;
+    }
+
+    void written(Object key) {
+        generations.incrementAndGet(slot(key));
+    }
+
+    private static int slot(Object key) {
+        return Math.floorMod(key.hashCode(), SLOTS);
+    }
+}
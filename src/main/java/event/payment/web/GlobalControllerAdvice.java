@@ -1,16 +1,141 @@
 package event.payment.web;
 
+import event.payment.exception.IdempotencyInFlightException;
+import event.payment.exception.IdempotencyKeyReuseException;
+import event.payment.exception.InvalidBatchException;
+import event.payment.exception.InvalidCursorException;
+import event.payment.exception.InvalidIdempotencyKeyException;
+import event.payment.exception.InvalidLookupException;
+import event.payment.exception.PaymentImportException;
+import event.payment.exception.PaymentNotFoundException;
+import event.payment.exception.PaymentTransitionException;
+import event.payment.exception.StatusChangeInDoubtException;
+import event.payment.exception.StatusChangeWithdrawnException;
 import event.payment.web.dto.ErrorResponse;
+import org.springframework.beans.TypeMismatchException;
+import org.springframework.core.MethodParameter;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.server.ServerWebInputException;
 
 import java.time.LocalDateTime;
 
 @ControllerAdvice
 public class GlobalControllerAdvice {
 
+    @ExceptionHandler({PaymentImportException.class, InvalidCursorException.class, InvalidIdempotencyKeyException.class,
+            InvalidLookupException.class, InvalidBatchException.class})
+    public ResponseEntity<ErrorResponse> handleBadRequest(RuntimeException e) {
+
+        ErrorResponse dto = new ErrorResponse(LocalDateTime.now(), e.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(dto);
+    }
+
+    // A path or query value that does not convert, such as an unknown transition or a malformed UUID
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<ErrorResponse> handleMethodArgumentTypeMismatchException(MethodArgumentTypeMismatchException e) {
+
+        ErrorResponse dto = new ErrorResponse(LocalDateTime.now(), "Invalid %s: %s".formatted(e.getName(), e.getValue()));
+
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(dto);
+    }
+
+    // The same on the reactive stack, where WebFlux wraps the type mismatch
+    @ExceptionHandler(ServerWebInputException.class)
+    public ResponseEntity<ErrorResponse> handleServerWebInputException(ServerWebInputException e) {
+
+        MethodParameter parameter = e.getMethodParameter();
+        String message = e.getCause() instanceof TypeMismatchException mismatch && parameter != null
+                ? "Invalid %s: %s".formatted(parameter.getParameterName(), mismatch.getValue())
+                : e.getReason();
+        ErrorResponse dto = new ErrorResponse(LocalDateTime.now(), message);
+
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(dto);
+    }
+
+    @ExceptionHandler(PaymentNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handlePaymentNotFoundException(PaymentNotFoundException e) {
+
+        ErrorResponse dto = new ErrorResponse(LocalDateTime.now(), e.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.NOT_FOUND)
+                .body(dto);
+    }
+
+    @ExceptionHandler(PaymentTransitionException.class)
+    public ResponseEntity<ErrorResponse> handlePaymentTransitionException(PaymentTransitionException e) {
+
+        ErrorResponse dto = new ErrorResponse(LocalDateTime.now(), e.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(dto);
+    }
+
+    @ExceptionHandler(IdempotencyInFlightException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyInFlightException(IdempotencyInFlightException e) {
+
+        ErrorResponse dto = new ErrorResponse(LocalDateTime.now(), e.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(dto);
+    }
+
+    @ExceptionHandler(IdempotencyKeyReuseException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyReuseException(IdempotencyKeyReuseException e) {
+
+        ErrorResponse dto = new ErrorResponse(LocalDateTime.now(), e.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(dto);
+    }
+
+    // The toggle was taken out of the write-behind buffer, so retrying applies it once
+    @ExceptionHandler(StatusChangeWithdrawnException.class)
+    public ResponseEntity<ErrorResponse> handleStatusChangeWithdrawnException(StatusChangeWithdrawnException e) {
+
+        ErrorResponse dto = new ErrorResponse(LocalDateTime.now(), e.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(dto);
+    }
+
+    // The toggle is being flushed and will most likely commit, so a blind retry could toggle it back
+    @ExceptionHandler(StatusChangeInDoubtException.class)
+    public ResponseEntity<ErrorResponse> handleStatusChangeInDoubtException(StatusChangeInDoubtException e) {
+
+        ErrorResponse dto = new ErrorResponse(LocalDateTime.now(), e.getMessage());
+
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .body(dto);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLockingFailureException(OptimisticLockingFailureException e) {
+
+        ErrorResponse dto = new ErrorResponse(LocalDateTime.now(), "Payment was modified concurrently, please retry");
+
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(dto);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleException(Exception e) {
 
@@ -1,35 +1,120 @@
 package event.payment.web;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import event.payment.model.BatchOutcome;
 import event.payment.model.Payment;
+import event.payment.model.PaymentCursor;
+import event.payment.model.PaymentTransition;
+import event.payment.model.PaymentView;
+import event.payment.service.IdempotencyService;
+import event.payment.service.ImportProgress;
+import event.payment.service.PaymentImportService;
 import event.payment.service.PaymentService;
+import event.payment.web.dto.PaymentBatchResponse;
+import event.payment.web.dto.PaymentChangeFeedResponse;
+import event.payment.web.dto.PaymentImportResponse;
+import event.payment.web.dto.PaymentLookupRequest;
+import event.payment.web.dto.PaymentLookupResponse;
+import event.payment.web.dto.PaymentPageResponse;
 import event.payment.web.dto.PaymentRequest;
 import event.payment.web.dto.PaymentResponse;
+import event.payment.web.dto.PaymentSummaryResponse;
 import event.payment.web.mapper.DtoMapper;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+@Profile("!reactive")
 @RestController
 @RequestMapping("/api/v1/payments")
 public class PaymentController {
 
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
     private final PaymentService paymentService;
+    private final PaymentImportService paymentImportService;
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter exportWriter;
 
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService,
+                             PaymentImportService paymentImportService,
+                             IdempotencyService idempotencyService,
+                             ObjectMapper objectMapper) {
         this.paymentService = paymentService;
+        this.paymentImportService = paymentImportService;
+        this.idempotencyService = idempotencyService;
+        this.objectMapper = objectMapper;
+        this.exportWriter = objectMapper.writerFor(PaymentResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
     @PostMapping
-    public ResponseEntity<PaymentResponse> upsertPayment(@RequestBody PaymentRequest request) {
+    public ResponseEntity<PaymentResponse> upsertPayment(@RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                                         @RequestBody PaymentRequest request) {
+
+        if (idempotencyKey == null) {
+            Payment payment = paymentService.upsertPayment(request);
 
-        Payment payment = paymentService.upsertPayment(request);
+            return ResponseEntity
+                    .status(HttpStatus.CREATED)
+                    .body(DtoMapper.from(payment));
+        }
+
+        IdempotencyService.Outcome<PaymentResponse> outcome = idempotencyService.execute(idempotencyKey, request,
+                PaymentResponse.class, () -> DtoMapper.from(paymentService.upsertPayment(request)));
 
         return ResponseEntity
                 .status(HttpStatus.CREATED)
-                .body(DtoMapper.from(payment));
+                .header(IDEMPOTENT_REPLAYED, String.valueOf(outcome.replayed()))
+                .body(outcome.response());
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<PaymentBatchResponse> upsertPayments(@RequestBody List<PaymentRequest> requests) {
+
+        List<BatchOutcome> outcomes = paymentService.upsertBatch(requests);
+
+        return ResponseEntity
+                .ok(DtoMapper.from(requests, outcomes));
+    }
+
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<PaymentImportResponse> importNdjson(InputStream body) throws IOException {
+
+        ImportProgress progress = paymentImportService.importNdjson(body);
+
+        return ResponseEntity
+                .ok(DtoMapper.from(progress));
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<PaymentImportResponse> importCsv(InputStream body) throws IOException {
+
+        ImportProgress progress = paymentImportService.importCsv(body);
+
+        return ResponseEntity
+                .ok(DtoMapper.from(progress));
+    }
+
+    @PostMapping("/lookup")
+    public ResponseEntity<PaymentLookupResponse> lookup(@RequestBody PaymentLookupRequest request) {
+        return ResponseEntity.ok(DtoMapper.from(paymentService.lookup(request)));
     }
 
     @PutMapping("/{eventId}/{userId}/status")
@@ -41,21 +126,132 @@ public class PaymentController {
                 .ok(DtoMapper.from(payment));
     }
 
+    @PostMapping("/{eventId}/{userId}/transitions/{transition}")
+    public ResponseEntity<Void> transition(@PathVariable UUID eventId,
+                                           @PathVariable UUID userId,
+                                           @PathVariable PaymentTransition transition) {
+
+        paymentService.transition(eventId, userId, transition);
+
+        return ResponseEntity
+                .noContent()
+                .build();
+    }
+
+    @GetMapping("/changes")
+    public ResponseEntity<PaymentChangeFeedResponse> getChanges(@RequestParam(defaultValue = "0") long after,
+                                                                @RequestParam(defaultValue = "100") int size) {
+
+        return ResponseEntity.ok(DtoMapper.fromChanges(paymentService.getChanges(after, size), after));
+    }
+
+    @GetMapping("/{eventId}/{userId}")
+    public ResponseEntity<PaymentResponse> getPayment(@PathVariable UUID eventId, @PathVariable UUID userId) {
+
+        Optional<PaymentView> payment = paymentService.findPayment(eventId, userId);
+
+        return ResponseEntity.of(payment.map(DtoMapper::from));
+    }
+
     @GetMapping("/event/{eventId}")
-    public ResponseEntity<List<PaymentResponse>> getPaymentsByEventId(@PathVariable UUID eventId) {
+    public ResponseEntity<List<PaymentResponse>> getPaymentsByEventId(@PathVariable UUID eventId,
+                                                                      @RequestParam(defaultValue = "false") boolean includeArchived) {
 
-        List<Payment> payments = paymentService.getAllByEventId(eventId);
+        List<PaymentView> payments = includeArchived
+                ? paymentService.getAllByEventIdIncludingArchived(eventId)
+                : paymentService.getAllByEventId(eventId);
         List<PaymentResponse> responses = payments.stream().map(DtoMapper::from).toList();
 
         return ResponseEntity.ok(responses);
     }
 
+    @GetMapping("/event/{eventId}/export")
+    public ResponseEntity<StreamingResponseBody> exportPaymentsByEventId(@PathVariable UUID eventId) {
+
+        StreamingResponseBody body = out -> {
+            JsonGenerator generator = objectMapper.createGenerator(out);
+            generator.writeStartArray();
+            paymentService.exportByEventId(eventId, payment -> writePayment(generator, payment));
+            generator.writeEndArray();
+            generator.flush();
+        };
+
+        return ResponseEntity
+                .ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    @GetMapping("/event/{eventId}/summary")
+    public ResponseEntity<PaymentSummaryResponse> getSummaryByEventId(@PathVariable UUID eventId) {
+        return ResponseEntity.ok(DtoMapper.fromSummary(paymentService.getSummaryByEventId(eventId)));
+    }
+
+    @GetMapping("/user/{userId}/summary")
+    public ResponseEntity<PaymentSummaryResponse> getSummaryByUserId(@PathVariable UUID userId) {
+        return ResponseEntity.ok(DtoMapper.fromSummary(paymentService.getSummaryByUserId(userId)));
+    }
+
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<PaymentResponse>> getPaymentsByUserId(@PathVariable UUID userId) {
+    public ResponseEntity<List<PaymentResponse>> getPaymentsByUserId(@PathVariable UUID userId,
+                                                                     @RequestParam(defaultValue = "false") boolean includeArchived) {
 
-        List<Payment> payments = paymentService.getAllByUserId(userId);
+        List<PaymentView> payments = includeArchived
+                ? paymentService.getAllByUserIdIncludingArchived(userId)
+                : paymentService.getAllByUserId(userId);
         List<PaymentResponse> responses = payments.stream().map(DtoMapper::from).toList();
 
         return ResponseEntity.ok(responses);
     }
+
+    @GetMapping("/event/{eventId}/page")
+    public ResponseEntity<PaymentPageResponse> getPaymentPageByEventId(@PathVariable UUID eventId,
+                                                                       @RequestParam(defaultValue = "0") int page,
+                                                                       @RequestParam(defaultValue = "50") int size) {
+
+        Slice<PaymentView> payments = paymentService.getPageByEventId(eventId, page, size);
+
+        return ResponseEntity.ok(DtoMapper.from(payments));
+    }
+
+    @GetMapping("/user/{userId}/page")
+    public ResponseEntity<PaymentPageResponse> getPaymentPageByUserId(@PathVariable UUID userId,
+                                                                      @RequestParam(defaultValue = "0") int page,
+                                                                      @RequestParam(defaultValue = "50") int size) {
+
+        Slice<PaymentView> payments = paymentService.getPageByUserId(userId, page, size);
+
+        return ResponseEntity.ok(DtoMapper.from(payments));
+    }
+
+    @GetMapping("/event/{eventId}/scroll")
+    public ResponseEntity<PaymentPageResponse> scrollPaymentsByEventId(@PathVariable UUID eventId,
+                                                                       @RequestParam(required = false) String cursor,
+                                                                       @RequestParam(defaultValue = "50") int size) {
+
+        PaymentCursor after = cursor == null ? null : PaymentCursor.decode(cursor);
+        Slice<PaymentView> payments = paymentService.getSliceByEventId(eventId, after, size);
+
+        return ResponseEntity.ok(DtoMapper.fromKeyset(payments));
+    }
+
+    @GetMapping("/user/{userId}/scroll")
+    public ResponseEntity<PaymentPageResponse> scrollPaymentsByUserId(@PathVariable UUID userId,
+                                                                      @RequestParam(required = false) String cursor,
+                                                                      @RequestParam(defaultValue = "50") int size) {
+
+        PaymentCursor after = cursor == null ? null : PaymentCursor.decode(cursor);
+        Slice<PaymentView> payments = paymentService.getSliceByUserId(userId, after, size);
+
+        return ResponseEntity.ok(DtoMapper.fromKeyset(payments));
+    }
+
+    private void writePayment(JsonGenerator generator, PaymentView payment) {
+
+        try {
+            exportWriter.writeValue(generator, DtoMapper.from(payment));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,205 @@
+package event.payment.web;
+
+import event.payment.model.PaymentCursor;
+import event.payment.model.PaymentTransition;
+import event.payment.model.PaymentView;
+import event.payment.service.ImportProgress;
+import event.payment.service.ReactivePaymentService;
+import event.payment.web.dto.PaymentBatchResponse;
+import event.payment.web.dto.PaymentChangeFeedResponse;
+import event.payment.web.dto.PaymentImportResponse;
+import event.payment.web.dto.PaymentLookupRequest;
+import event.payment.web.dto.PaymentLookupResponse;
+import event.payment.web.dto.PaymentPageResponse;
+import event.payment.web.dto.PaymentRequest;
+import event.payment.web.dto.PaymentResponse;
+import event.payment.web.dto.PaymentSummaryResponse;
+import event.payment.web.mapper.DtoMapper;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+@Profile("reactive")
+@RestController
+@RequestMapping("/api/v1/payments")
+public class ReactivePaymentController {
+
+    // Buffers requested ahead while a blocking import reads the request body
+    private static final int IMPORT_DEMAND = 16;
+
+    private final ReactivePaymentService paymentService;
+
+    public ReactivePaymentController(ReactivePaymentService paymentService) {
+        this.paymentService = paymentService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<PaymentResponse>> upsertPayment(@RequestBody PaymentRequest request) {
+
+        return paymentService.upsertPayment(request)
+                .map(payment -> ResponseEntity
+                        .status(HttpStatus.CREATED)
+                        .body(DtoMapper.from(payment)));
+    }
+
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<PaymentBatchResponse>> upsertPayments(@RequestBody List<PaymentRequest> requests) {
+
+        return paymentService.upsertBatch(requests)
+                .map(outcomes -> ResponseEntity.ok(DtoMapper.from(requests, outcomes)));
+    }
+
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public Mono<ResponseEntity<PaymentImportResponse>> importNdjson(@RequestBody Flux<DataBuffer> body) {
+        return importBody(body, paymentService::importNdjson);
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public Mono<ResponseEntity<PaymentImportResponse>> importCsv(@RequestBody Flux<DataBuffer> body) {
+        return importBody(body, paymentService::importCsv);
+    }
+
+    @PostMapping("/lookup")
+    public Mono<ResponseEntity<PaymentLookupResponse>> lookup(@RequestBody PaymentLookupRequest request) {
+
+        return paymentService.lookup(request)
+                .map(lookup -> ResponseEntity.ok(DtoMapper.from(lookup)));
+    }
+
+    @PutMapping("/{eventId}/{userId}/status")
+    public Mono<ResponseEntity<PaymentResponse>> updateStatus(@PathVariable UUID eventId, @PathVariable UUID userId) {
+
+        return paymentService.updateStatus(eventId, userId)
+                .map(payment -> ResponseEntity.ok(DtoMapper.from(payment)));
+    }
+
+    @PostMapping("/{eventId}/{userId}/transitions/{transition}")
+    public Mono<ResponseEntity<Void>> transition(@PathVariable UUID eventId,
+                                                 @PathVariable UUID userId,
+                                                 @PathVariable PaymentTransition transition) {
+
+        return paymentService.transition(eventId, userId, transition)
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+
+    @GetMapping("/changes")
+    public Mono<ResponseEntity<PaymentChangeFeedResponse>> getChanges(@RequestParam(defaultValue = "0") long after,
+                                                                      @RequestParam(defaultValue = "100") int size) {
+
+        return paymentService.getChanges(after, size)
+                .map(changes -> ResponseEntity.ok(DtoMapper.fromChanges(changes, after)));
+    }
+
+    @GetMapping("/{eventId}/{userId}")
+    public Mono<ResponseEntity<PaymentResponse>> getPayment(@PathVariable UUID eventId, @PathVariable UUID userId) {
+
+        return paymentService.findPayment(eventId, userId)
+                .map(payment -> ResponseEntity.ok(DtoMapper.from(payment)))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/event/{eventId}")
+    public Flux<PaymentResponse> getPaymentsByEventId(@PathVariable UUID eventId,
+                                                      @RequestParam(defaultValue = "false") boolean includeArchived) {
+
+        Flux<PaymentView> payments = includeArchived
+                ? paymentService.getAllByEventIdIncludingArchived(eventId)
+                : paymentService.getAllByEventId(eventId);
+        return payments.map(DtoMapper::from);
+    }
+
+    @GetMapping(value = "/event/{eventId}/export", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<PaymentResponse> exportPaymentsByEventId(@PathVariable UUID eventId) {
+        return paymentService.getAllByEventId(eventId).map(DtoMapper::from);
+    }
+
+    @GetMapping("/event/{eventId}/summary")
+    public Mono<ResponseEntity<PaymentSummaryResponse>> getSummaryByEventId(@PathVariable UUID eventId) {
+
+        return paymentService.getSummaryByEventId(eventId)
+                .map(summaries -> ResponseEntity.ok(DtoMapper.fromSummary(summaries)));
+    }
+
+    @GetMapping("/user/{userId}/summary")
+    public Mono<ResponseEntity<PaymentSummaryResponse>> getSummaryByUserId(@PathVariable UUID userId) {
+
+        return paymentService.getSummaryByUserId(userId)
+                .map(summaries -> ResponseEntity.ok(DtoMapper.fromSummary(summaries)));
+    }
+
+    @GetMapping("/user/{userId}")
+    public Flux<PaymentResponse> getPaymentsByUserId(@PathVariable UUID userId,
+                                                     @RequestParam(defaultValue = "false") boolean includeArchived) {
+
+        Flux<PaymentView> payments = includeArchived
+                ? paymentService.getAllByUserIdIncludingArchived(userId)
+                : paymentService.getAllByUserId(userId);
+        return payments.map(DtoMapper::from);
+    }
+
+    @GetMapping("/event/{eventId}/page")
+    public Mono<ResponseEntity<PaymentPageResponse>> getPaymentPageByEventId(@PathVariable UUID eventId,
+                                                                             @RequestParam(defaultValue = "0") int page,
+                                                                             @RequestParam(defaultValue = "50") int size) {
+
+        return paymentService.getPageByEventId(eventId, page, size)
+                .map(payments -> ResponseEntity.ok(DtoMapper.from(payments)));
+    }
+
+    @GetMapping("/user/{userId}/page")
+    public Mono<ResponseEntity<PaymentPageResponse>> getPaymentPageByUserId(@PathVariable UUID userId,
+                                                                            @RequestParam(defaultValue = "0") int page,
+                                                                            @RequestParam(defaultValue = "50") int size) {
+
+        return paymentService.getPageByUserId(userId, page, size)
+                .map(payments -> ResponseEntity.ok(DtoMapper.from(payments)));
+    }
+
+    @GetMapping("/event/{eventId}/scroll")
+    public Mono<ResponseEntity<PaymentPageResponse>> scrollPaymentsByEventId(@PathVariable UUID eventId,
+                                                                             @RequestParam(required = false) String cursor,
+                                                                             @RequestParam(defaultValue = "50") int size) {
+
+        // Deferred so an invalid cursor surfaces as an error signal for the controller advice
+        return Mono.defer(() -> paymentService.getSliceByEventId(eventId, cursor == null ? null : PaymentCursor.decode(cursor), size))
+                .map(payments -> ResponseEntity.ok(DtoMapper.fromKeyset(payments)));
+    }
+
+    @GetMapping("/user/{userId}/scroll")
+    public Mono<ResponseEntity<PaymentPageResponse>> scrollPaymentsByUserId(@PathVariable UUID userId,
+                                                                            @RequestParam(required = false) String cursor,
+                                                                            @RequestParam(defaultValue = "50") int size) {
+
+        // Deferred so an invalid cursor surfaces as an error signal for the controller advice
+        return Mono.defer(() -> paymentService.getSliceByUserId(userId, cursor == null ? null : PaymentCursor.decode(cursor), size))
+                .map(payments -> ResponseEntity.ok(DtoMapper.fromKeyset(payments)));
+    }
+
+    private Mono<ResponseEntity<PaymentImportResponse>> importBody(Flux<DataBuffer> body,
+                                                                   Function<InputStream, Mono<ImportProgress>> importer) {
+
+        return Mono.using(() -> DataBufferUtils.subscriberInputStream(body, IMPORT_DEMAND), importer, this::close)
+                .map(progress -> ResponseEntity.ok(DtoMapper.from(progress)));
+    }
+
+    private void close(InputStream in) {
+
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // Nothing left to release once the import has finished reading
+        }
+    }
+}
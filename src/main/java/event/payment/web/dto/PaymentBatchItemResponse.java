@@ -0,0 +1,20 @@
+package event.payment.web.dto;
+
+import event.payment.model.BatchOutcome;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.UUID;
+
+@Data
+@Builder
+public class PaymentBatchItemResponse {
+
+    private int index;
+
+    private UUID eventId;
+
+    private UUID userId;
+
+    private BatchOutcome outcome;
+}
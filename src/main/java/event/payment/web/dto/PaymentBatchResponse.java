@@ -0,0 +1,19 @@
+package event.payment.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class PaymentBatchResponse {
+
+    private int created;
+
+    private int updated;
+
+    private int rejected;
+
+    private List<PaymentBatchItemResponse> items;
+}
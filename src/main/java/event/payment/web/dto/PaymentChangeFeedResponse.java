@@ -0,0 +1,18 @@
+package event.payment.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class PaymentChangeFeedResponse {
+
+    private List<PaymentChangeResponse> changes;
+
+    // Pass as `after` on the next call; equals the request's `after` when nothing new was relayed yet
+    private long nextAfter;
+
+    private boolean hasNext;
+}
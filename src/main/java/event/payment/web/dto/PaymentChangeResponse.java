@@ -0,0 +1,32 @@
+package event.payment.web.dto;
+
+import event.payment.model.PaymentChangeType;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+public class PaymentChangeResponse {
+
+    private long sequence;
+
+    private PaymentChangeType changeType;
+
+    private UUID eventId;
+
+    private UUID userId;
+
+    private BigDecimal amount;
+
+    private PaymentType type;
+
+    private PaymentStatus status;
+
+    private LocalDateTime changedOn;
+}
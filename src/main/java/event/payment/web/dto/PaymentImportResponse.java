@@ -0,0 +1,19 @@
+package event.payment.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class PaymentImportResponse {
+
+    private long processed;
+
+    private long created;
+
+    private long updated;
+
+    private long rejected;
+
+    private int chunks;
+}
@@ -0,0 +1,19 @@
+package event.payment.web.dto;
+
+import event.payment.model.PaymentKey;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Set;
+import java.util.UUID;
+
+@Data
+@Builder
+public class PaymentLookupRequest {
+
+    private Set<UUID> userIds;
+
+    private Set<UUID> eventIds;
+
+    private Set<PaymentKey> payments;
+}
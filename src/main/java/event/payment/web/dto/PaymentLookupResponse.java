@@ -0,0 +1,19 @@
+package event.payment.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Data
+@Builder
+public class PaymentLookupResponse {
+
+    private Map<UUID, List<PaymentResponse>> byUser;
+
+    private Map<UUID, List<PaymentResponse>> byEvent;
+
+    private List<PaymentResponse> payments;
+}
@@ -0,0 +1,21 @@
+package event.payment.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class PaymentPageResponse {
+
+    private List<PaymentResponse> content;
+
+    private Integer page;
+
+    private int size;
+
+    private boolean hasNext;
+
+    private String nextCursor;
+}
@@ -0,0 +1,22 @@
+package event.payment.web.dto;
+
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+@Data
+@Builder
+public class PaymentSummaryResponse {
+
+    private long count;
+
+    private BigDecimal amount;
+
+    private Map<PaymentStatus, PaymentTotalsResponse> byStatus;
+
+    private Map<PaymentType, PaymentTotalsResponse> byType;
+}
@@ -0,0 +1,15 @@
+package event.payment.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+public class PaymentTotalsResponse {
+
+    private long count;
+
+    private BigDecimal amount;
+}
@@ -1,8 +1,37 @@
 package event.payment.web.mapper;
 
+import event.payment.model.BatchOutcome;
 import event.payment.model.Payment;
+import event.payment.model.PaymentChange;
+import event.payment.model.PaymentCursor;
+import event.payment.model.PaymentLookup;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentSummary;
+import event.payment.model.PaymentType;
+import event.payment.model.PaymentView;
+import event.payment.service.ImportProgress;
+import event.payment.web.dto.PaymentBatchItemResponse;
+import event.payment.web.dto.PaymentBatchResponse;
+import event.payment.web.dto.PaymentChangeFeedResponse;
+import event.payment.web.dto.PaymentChangeResponse;
+import event.payment.web.dto.PaymentImportResponse;
+import event.payment.web.dto.PaymentLookupResponse;
+import event.payment.web.dto.PaymentPageResponse;
+import event.payment.web.dto.PaymentRequest;
 import event.payment.web.dto.PaymentResponse;
+import event.payment.web.dto.PaymentSummaryResponse;
+import event.payment.web.dto.PaymentTotalsResponse;
 import lombok.experimental.UtilityClass;
+import org.springframework.data.domain.Slice;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 @UtilityClass
 public class DtoMapper {
@@ -19,4 +48,165 @@ public class DtoMapper {
                 .status(payment.getStatus())
                 .build();
     }
+
+    public static PaymentResponse from(PaymentView payment) {
+
+        return PaymentResponse.builder()
+                .eventId(payment.eventId())
+                .userId(payment.userId())
+                .username(payment.username())
+                .eventName(payment.eventName())
+                .amount(payment.amount())
+                .type(payment.type())
+                .status(payment.status())
+                .build();
+    }
+
+    public static PaymentLookupResponse from(PaymentLookup lookup) {
+
+        return PaymentLookupResponse.builder()
+                .byUser(fromGrouped(lookup.byUser()))
+                .byEvent(fromGrouped(lookup.byEvent()))
+                .payments(lookup.payments().stream().map(DtoMapper::from).toList())
+                .build();
+    }
+
+    public static PaymentBatchResponse from(List<PaymentRequest> requests, List<BatchOutcome> outcomes) {
+
+        List<PaymentBatchItemResponse> items = new ArrayList<>(outcomes.size());
+        int[] counts = new int[BatchOutcome.values().length];
+
+        for (int i = 0; i < outcomes.size(); i++) {
+            BatchOutcome outcome = outcomes.get(i);
+            counts[outcome.ordinal()]++;
+            items.add(PaymentBatchItemResponse.builder()
+                    .index(i)
+                    .eventId(requests.get(i).getEventId())
+                    .userId(requests.get(i).getUserId())
+                    .outcome(outcome)
+                    .build());
+        }
+
+        return PaymentBatchResponse.builder()
+                .created(counts[BatchOutcome.CREATED.ordinal()])
+                .updated(counts[BatchOutcome.UPDATED.ordinal()])
+                .rejected(counts[BatchOutcome.REJECTED.ordinal()])
+                .items(items)
+                .build();
+    }
+
+    public static PaymentImportResponse from(ImportProgress progress) {
+
+        return PaymentImportResponse.builder()
+                .processed(progress.getProcessed())
+                .created(progress.getCreated())
+                .updated(progress.getUpdated())
+                .rejected(progress.getRejected())
+                .chunks(progress.getChunks())
+                .build();
+    }
+
+    public static PaymentPageResponse from(Slice<PaymentView> slice) {
+
+        return PaymentPageResponse.builder()
+                .content(slice.getContent().stream().map(DtoMapper::from).toList())
+                .page(slice.getNumber())
+                .size(slice.getSize())
+                .hasNext(slice.hasNext())
+                .build();
+    }
+
+    public static PaymentPageResponse fromKeyset(Slice<PaymentView> slice) {
+
+        List<PaymentView> content = slice.getContent();
+
+        return PaymentPageResponse.builder()
+                .content(content.stream().map(DtoMapper::from).toList())
+                .size(slice.getSize())
+                .hasNext(slice.hasNext())
+                .nextCursor(slice.hasNext() ? PaymentCursor.of(content.get(content.size() - 1)).encode() : null)
+                .build();
+    }
+
+    public static PaymentChangeResponse from(PaymentChange change) {
+
+        return PaymentChangeResponse.builder()
+                .sequence(change.getSequenceNumber())
+                .changeType(change.getChangeType())
+                .eventId(change.getEventId())
+                .userId(change.getUserId())
+                .amount(change.getAmount())
+                .type(change.getType())
+                .status(change.getStatus())
+                .changedOn(change.getChangedOn())
+                .build();
+    }
+
+    public static PaymentChangeFeedResponse fromChanges(Slice<PaymentChange> slice, long after) {
+
+        List<PaymentChange> content = slice.getContent();
+
+        return PaymentChangeFeedResponse.builder()
+                .changes(content.stream().map(DtoMapper::from).toList())
+                .nextAfter(content.isEmpty() ? after : content.get(content.size() - 1).getSequenceNumber())
+                .hasNext(slice.hasNext())
+                .build();
+    }
+
+    public static PaymentSummaryResponse fromSummary(List<PaymentSummary> cells) {
+
+        long count = 0;
+        BigDecimal amount = BigDecimal.ZERO;
+        long[] statusCounts = new long[PaymentStatus.values().length];
+        BigDecimal[] statusAmounts = zeros(PaymentStatus.values().length);
+        long[] typeCounts = new long[PaymentType.values().length];
+        BigDecimal[] typeAmounts = zeros(PaymentType.values().length);
+
+        for (PaymentSummary cell : cells) {
+            int status = cell.getId().getStatus().ordinal();
+            int type = cell.getId().getType().ordinal();
+
+            count += cell.getPaymentCount();
+            amount = amount.add(cell.getAmountSum());
+            statusCounts[status] += cell.getPaymentCount();
+            statusAmounts[status] = statusAmounts[status].add(cell.getAmountSum());
+            typeCounts[type] += cell.getPaymentCount();
+            typeAmounts[type] = typeAmounts[type].add(cell.getAmountSum());
+        }
+
+        // Every status and type is listed, with zero totals when the owner has none
+        Map<PaymentStatus, PaymentTotalsResponse> byStatus = new EnumMap<>(PaymentStatus.class);
+        for (PaymentStatus status : PaymentStatus.values()) {
+            byStatus.put(status, totals(statusCounts[status.ordinal()], statusAmounts[status.ordinal()]));
+        }
+        Map<PaymentType, PaymentTotalsResponse> byType = new EnumMap<>(PaymentType.class);
+        for (PaymentType type : PaymentType.values()) {
+            byType.put(type, totals(typeCounts[type.ordinal()], typeAmounts[type.ordinal()]));
+        }
+
+        return PaymentSummaryResponse.builder()
+                .count(count)
+                .amount(amount)
+                .byStatus(byStatus)
+                .byType(byType)
+                .build();
+    }
+
+    private static Map<UUID, List<PaymentResponse>> fromGrouped(Map<UUID, List<PaymentView>> grouped) {
+
+        Map<UUID, List<PaymentResponse>> responses = new LinkedHashMap<>();
+        grouped.forEach((id, payments) -> responses.put(id, payments.stream().map(DtoMapper::from).toList()));
+        return responses;
+    }
+
+    private static PaymentTotalsResponse totals(long count, BigDecimal amount) {
+        return PaymentTotalsResponse.builder().count(count).amount(amount).build();
+    }
+
+    private static BigDecimal[] zeros(int length) {
+
+        BigDecimal[] amounts = new BigDecimal[length];
+        Arrays.fill(amounts, BigDecimal.ZERO);
+        return amounts;
+    }
 }
@@ -0,0 +1,17 @@
+-- Adds the (event_id, user_id) unique key and the listing indexes to an existing `payment` table.
+-- New databases get them from Hibernate (ddl-auto=update); run this once on databases created before.
+
+-- Keep only the most recent payment per (event_id, user_id) so the unique key can be created.
+DELETE p
+FROM payment p
+         JOIN payment newer
+              ON newer.event_id = p.event_id
+                  AND newer.user_id = p.user_id
+                  AND (newer.created_on > p.created_on
+                      OR (newer.created_on = p.created_on AND newer.id > p.id));
+
+ALTER TABLE payment
+    ADD CONSTRAINT ux_payment_event_user UNIQUE (event_id, user_id),
+    ADD INDEX ix_payment_user_created (user_id, created_on),
+    ADD INDEX ix_payment_event_created (event_id, created_on),
+    ALGORITHM = INPLACE, LOCK = NONE;
@@ -0,0 +1,4 @@
+-- Adds the optimistic-locking version column to an existing `payment` table.
+ALTER TABLE payment
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0,
+    ALGORITHM = INSTANT;
@@ -0,0 +1,33 @@
+-- Converts the UUID columns of `payment` from CHAR(36) text to BINARY(16), the layout Hibernate 6 uses for
+-- java.util.UUID on MySQL (most significant byte first, as UUID_TO_BIN without the swap flag).
+-- Only needed for a table created outside Hibernate 6: check SHOW CREATE TABLE payment first. For BINARY(255)
+-- columns left by Hibernate 5, replace UUID_TO_BIN(x) with LEFT(x, 16).
+-- Existing ids keep their value; only ids generated from now on are time-ordered (UUIDv7).
+-- Rewrites the table; run with writes stopped.
+ALTER TABLE payment
+    ADD COLUMN id_bin       BINARY(16) NULL,
+    ADD COLUMN event_id_bin BINARY(16) NULL,
+    ADD COLUMN user_id_bin  BINARY(16) NULL;
+
+UPDATE payment
+SET id_bin       = UUID_TO_BIN(id),
+    event_id_bin = UUID_TO_BIN(event_id),
+    user_id_bin  = UUID_TO_BIN(user_id);
+
+ALTER TABLE payment
+    DROP PRIMARY KEY,
+    DROP INDEX ux_payment_event_user,
+    DROP INDEX ix_payment_user_created,
+    DROP INDEX ix_payment_event_created,
+    DROP COLUMN id,
+    DROP COLUMN event_id,
+    DROP COLUMN user_id;
+
+ALTER TABLE payment
+    CHANGE COLUMN id_bin id BINARY(16) NOT NULL FIRST,
+    CHANGE COLUMN event_id_bin event_id BINARY(16) NOT NULL,
+    CHANGE COLUMN user_id_bin user_id BINARY(16) NOT NULL,
+    ADD PRIMARY KEY (id),
+    ADD CONSTRAINT ux_payment_event_user UNIQUE (event_id, user_id),
+    ADD INDEX ix_payment_user_created (user_id, created_on),
+    ADD INDEX ix_payment_event_created (event_id, created_on);
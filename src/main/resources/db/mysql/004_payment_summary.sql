@@ -0,0 +1,25 @@
+-- Creates the per-event and per-user `payment_summary` table and fills it from the existing payments.
+-- Run once, with writes stopped, before starting a version that maintains it: Hibernate (ddl-auto=update)
+-- would otherwise create it empty and later deltas would be applied to a zero base.
+-- Runs after 003_payment_uuid_binary.sql: the owner ids are copied from `payment` as they are, so they must already
+-- be BINARY(16). Copying CHAR(36) text would truncate every id to its first 16 characters.
+CREATE TABLE payment_summary
+(
+    owner_type    ENUM ('EVENT','USER')               NOT NULL,
+    owner_id      BINARY(16)                          NOT NULL,
+    status        ENUM ('PENDING','PAID','CANCELLED') NOT NULL,
+    type          ENUM ('SINGLE','MONTHLY')           NOT NULL,
+    payment_count BIGINT                              NOT NULL,
+    amount_sum    DECIMAL(38, 2)                      NOT NULL,
+    PRIMARY KEY (owner_type, owner_id, status, type)
+);
+
+INSERT INTO payment_summary (owner_type, owner_id, status, type, payment_count, amount_sum)
+SELECT 'EVENT', event_id, status, type, COUNT(*), COALESCE(SUM(amount), 0)
+FROM payment
+GROUP BY event_id, status, type;
+
+INSERT INTO payment_summary (owner_type, owner_id, status, type, payment_count, amount_sum)
+SELECT 'USER', user_id, status, type, COUNT(*), COALESCE(SUM(amount), 0)
+FROM payment
+GROUP BY user_id, status, type;
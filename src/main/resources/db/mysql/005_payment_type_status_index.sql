@@ -0,0 +1,3 @@
+-- Adds the index behind the recurring-billing scan over paid MONTHLY payments. InnoDB appends the primary key to
+-- secondary indexes, so the scan reads (type, status) in id order without a sort.
+CREATE INDEX ix_payment_type_status ON payment (type, status);
@@ -0,0 +1,3 @@
+-- Adds the index behind the archiver's scan for old payments in one status and type, oldest first.
+-- Hibernate creates the payment_archive table itself.
+CREATE INDEX ix_payment_status_type_created ON payment (status, type, created_on);
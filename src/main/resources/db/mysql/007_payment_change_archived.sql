@@ -0,0 +1,4 @@
+-- Adds the ARCHIVED change type recorded by the archiver. Hibernate maps the enum to a MySQL ENUM column and
+-- ddl-auto=update does not extend existing ENUM columns, so run this before deploying the version that archives.
+ALTER TABLE payment_change
+    MODIFY COLUMN change_type ENUM ('CREATED','UPDATED','STATUS_CHANGED','ARCHIVED') NOT NULL;
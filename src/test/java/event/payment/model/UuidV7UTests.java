@@ -0,0 +1,94 @@
+package event.payment.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UuidV7UTests {
+
+    @Test
+    void next_shouldSetVersionAndVariant() {
+
+        UUID id = UuidV7.next();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+    }
+
+    @Test
+    void next_withinOneMillisecond_shouldCountUpInOrder() {
+
+        long millis = System.currentTimeMillis();
+        List<UUID> ids = generate(millis, 100);
+
+        assertIncreasingAsBinary(ids);
+        for (int i = 1; i < ids.size(); i++) {
+            if (timestamp(ids.get(i)) == timestamp(ids.get(i - 1))) {
+                assertThat(counter(ids.get(i))).isEqualTo(counter(ids.get(i - 1)) + 1);
+            }
+        }
+        assertThat(ids).allMatch(id -> id.version() == 7 && id.variant() == 2);
+    }
+
+    @Test
+    void next_whenCounterIsExhausted_shouldBorrowTheNextMillisecond() {
+
+        // More ids than the 12-bit counter holds, all stamped with the same clock reading
+        long millis = System.currentTimeMillis();
+        List<UUID> ids = generate(millis, 5000);
+
+        assertIncreasingAsBinary(ids);
+        assertThat(timestamp(ids.get(0))).isGreaterThanOrEqualTo(millis);
+        assertThat(timestamp(ids.get(ids.size() - 1))).isGreaterThan(millis);
+        assertThat(ids).allMatch(id -> id.version() == 7 && id.variant() == 2);
+    }
+
+    @Test
+    void next_whenClockStepsBack_shouldStayInOrder() {
+
+        long millis = System.currentTimeMillis();
+        UUID first = UuidV7.next(millis + 5);
+        UUID second = UuidV7.next(millis);
+
+        assertThat(compareAsBinary(first, second)).isNegative();
+    }
+
+    private static List<UUID> generate(long millis, int count) {
+
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UuidV7.next(millis));
+        }
+        return ids;
+    }
+
+    // The database orders BINARY(16) as unsigned bytes; UUID.compareTo compares signed longs
+    private static void assertIncreasingAsBinary(List<UUID> ids) {
+
+        for (int i = 1; i < ids.size(); i++) {
+            assertThat(compareAsBinary(ids.get(i - 1), ids.get(i))).as("id %d", i).isNegative();
+        }
+    }
+
+    private static int compareAsBinary(UUID left, UUID right) {
+        return Arrays.compareUnsigned(bytes(left), bytes(right));
+    }
+
+    private static byte[] bytes(UUID id) {
+        return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    }
+
+    private static long timestamp(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+
+    private static long counter(UUID id) {
+        return id.getMostSignificantBits() & 0xFFFL;
+    }
+}
@@ -0,0 +1,144 @@
+package event.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import event.payment.config.PaymentProperties;
+import event.payment.exception.IdempotencyKeyReuseException;
+import event.payment.exception.InvalidIdempotencyKeyException;
+import event.payment.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+public class IdempotencyServiceUTests {
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+
+        when(idempotencyRecordRepository.findById(anyString())).thenReturn(Optional.empty());
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(idempotencyRecordRepository.complete(any(), any(), any(), any())).thenReturn(1);
+
+        idempotencyService = new IdempotencyService(idempotencyRecordRepository, transactionTemplate, new ObjectMapper(),
+                meterRegistry, new PaymentProperties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        idempotencyService.shutdown();
+    }
+
+    @Test
+    void execute_whenDuplicateArrivesWhileInFlight_thenWaitsAndReplaysWithoutRunningTwice() throws Exception {
+
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<IdempotencyService.Outcome<StatusResponse>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("key-1", Map.of("amount", 10), StatusResponse.class, () -> {
+                    runs.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return new StatusResponse("PAID");
+                }));
+        assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<IdempotencyService.Outcome<StatusResponse>> duplicate = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("key-1", Map.of("amount", 10), StatusResponse.class, () -> {
+                    runs.incrementAndGet();
+                    return new StatusResponse("PENDING");
+                }));
+        Thread.sleep(100);
+        assertThat(duplicate).isNotDone();
+
+        release.countDown();
+
+        assertThat(first.get().replayed()).isFalse();
+        assertThat(duplicate.get().replayed()).isTrue();
+        assertThat(duplicate.get().response().status()).isEqualTo("PAID");
+        assertThat(runs).hasValue(1);
+        verify(idempotencyRecordRepository, times(1)).claim(eq("key-1"), anyString(), any());
+    }
+
+    @Test
+    void execute_whenKeyReusedForDifferentRequest_thenRejects() {
+
+        idempotencyService.execute("key-2", Map.of("amount", 10), StatusResponse.class,
+                () -> new StatusResponse("PAID"));
+
+        assertThatThrownBy(() -> idempotencyService.execute("key-2", Map.of("amount", 20), StatusResponse.class,
+                () -> new StatusResponse("PENDING")))
+                .isInstanceOf(IdempotencyKeyReuseException.class);
+    }
+
+    @Test
+    void execute_whenWorkFails_thenReleasesClaimForRetry() {
+
+        assertThatThrownBy(() -> idempotencyService.execute("key-3", Map.of(), StatusResponse.class, () -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+
+        verify(idempotencyRecordRepository).deleteClaim(eq("key-3"), any());
+        assertThat(idempotencyService.execute("key-3", Map.of(), StatusResponse.class,
+                () -> new StatusResponse("PAID")).replayed())
+                .isFalse();
+    }
+
+    @Test
+    void execute_whenKeyBlank_thenRejects() {
+
+        assertThatThrownBy(() -> idempotencyService.execute(" ", Map.of(), StatusResponse.class,
+                () -> new StatusResponse("PENDING")))
+                .isInstanceOf(InvalidIdempotencyKeyException.class);
+    }
+
+    private static void await(CountDownLatch latch) {
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    record StatusResponse(String status) {
+    }
+}
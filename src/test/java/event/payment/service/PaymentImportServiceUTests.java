@@ -0,0 +1,114 @@
+package event.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import event.payment.config.PaymentProperties;
+import event.payment.exception.PaymentImportException;
+import event.payment.model.BatchOutcome;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentType;
+import event.payment.web.dto.PaymentRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+public class PaymentImportServiceUTests {
+
+    @Mock
+    private PaymentService paymentService;
+
+    private PaymentImportService paymentImportService;
+
+    private final List<List<PaymentRequest>> chunks = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        PaymentProperties paymentProperties = new PaymentProperties();
+        paymentProperties.getBatch().setChunkSize(2);
+        paymentImportService = new PaymentImportService(paymentService, new ObjectMapper().findAndRegisterModules(), paymentProperties);
+
+        when(paymentService.upsertBatch(anyList())).thenAnswer(invocation -> {
+            List<PaymentRequest> chunk = invocation.getArgument(0);
+            chunks.add(List.copyOf(chunk));
+            return chunk.stream().map(request -> BatchOutcome.CREATED).toList();
+        });
+    }
+
+    @Test
+    void importNdjson_whenRowsExceedChunkSize_thenUpsertsInChunks_andReportsProgress() throws Exception {
+
+        UUID eventId = UUID.randomUUID();
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            ndjson.append("""
+                    {"eventId":"%s","userId":"%s","amount":10,"type":"SINGLE","status":"PENDING"}
+                    """.formatted(eventId, UUID.randomUUID()));
+        }
+
+        ImportProgress progress = paymentImportService.importNdjson(stream(ndjson.toString()));
+
+        assertThat(progress.getProcessed()).isEqualTo(5);
+        assertThat(progress.getCreated()).isEqualTo(5);
+        assertThat(progress.getChunks()).isEqualTo(3);
+        assertThat(chunks).extracting(List::size).containsExactly(2, 2, 1);
+        assertThat(chunks.get(0).get(0).getEventId()).isEqualTo(eventId);
+    }
+
+    @Test
+    void importCsv_whenHeaderAndRows_thenMapsColumnsToRequests() throws Exception {
+
+        UUID eventId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        String csv = """
+                eventId,userId,username,amount,type,status
+                %s,%s,csvUser,12.50,MONTHLY,PAID
+                """.formatted(eventId, userId);
+
+        ImportProgress progress = paymentImportService.importCsv(stream(csv));
+
+        assertThat(progress.getProcessed()).isEqualTo(1);
+        PaymentRequest request = chunks.get(0).get(0);
+        assertThat(request.getEventId()).isEqualTo(eventId);
+        assertThat(request.getUserId()).isEqualTo(userId);
+        assertThat(request.getUsername()).isEqualTo("csvUser");
+        assertThat(request.getAmount()).isEqualByComparingTo(new BigDecimal("12.50"));
+        assertThat(request.getType()).isEqualTo(PaymentType.MONTHLY);
+        assertThat(request.getStatus()).isEqualTo(PaymentStatus.PAID);
+    }
+
+    @Test
+    void importNdjson_whenRowIsMalformed_thenThrowsAfterCommittedChunks() {
+
+        String ndjson = """
+                {"eventId":"%s","userId":"%s","type":"SINGLE","status":"PENDING"}
+                {"eventId":"%s","userId":"%s","type":"SINGLE","status":"PENDING"}
+                {"eventId": broken
+                """.formatted(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+
+        PaymentImportException e = assertThrows(PaymentImportException.class,
+                () -> paymentImportService.importNdjson(stream(ndjson)));
+
+        assertThat(e.getMessage()).startsWith("Import stopped after 2 rows");
+        verify(paymentService, times(1)).upsertBatch(anyList());
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,26 +1,74 @@
 package event.payment.service;
 
+import com.github.benmanes.caffeine.cache.Ticker;
+import event.payment.config.PaymentProperties;
+import event.payment.config.ReadRouting;
+import event.payment.exception.InvalidBatchException;
+import event.payment.exception.InvalidLookupException;
+import event.payment.exception.PaymentNotFoundException;
+import event.payment.exception.PaymentTransitionException;
+import event.payment.model.BatchOutcome;
 import event.payment.model.Payment;
+import event.payment.model.PaymentChangeType;
+import event.payment.model.PaymentCursor;
+import event.payment.model.PaymentKey;
+import event.payment.model.PaymentLookup;
 import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentSummary;
+import event.payment.model.PaymentSummaryChanges;
+import event.payment.model.PaymentTransition;
 import event.payment.model.PaymentType;
+import event.payment.model.PaymentView;
+import event.payment.model.SummaryOwner;
+import event.payment.repository.PaymentArchiveRepository;
+import event.payment.repository.PaymentChangeRepository;
 import event.payment.repository.PaymentRepository;
+import event.payment.repository.PaymentSummaryRepository;
+import event.payment.web.dto.PaymentLookupRequest;
 import event.payment.web.dto.PaymentRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Slice;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(SpringExtension.class)
@@ -29,9 +77,50 @@ public class PaymentUTests {
     @Mock
     private PaymentRepository paymentRepository;
 
+    @Mock
+    private PaymentSummaryRepository paymentSummaryRepository;
+
+    @Mock
+    private PaymentChangeRepository paymentChangeRepository;
+
+    @Mock
+    private PaymentArchiveRepository paymentArchiveRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private PaymentProperties paymentProperties = new PaymentProperties();
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private StatusWriteBehindBuffer statusWriteBehindBuffer;
+
+    @Spy
+    private ReadRouting readRouting = new ReadRouting(new PaymentProperties(),
+            mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), Ticker.systemTicker());
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager();
+
     @InjectMocks
     private PaymentService paymentService;
 
+    @BeforeEach
+    void setUp() {
+        paymentProperties.getRetry().setBackoff(Duration.ZERO);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        // Nothing is buffered, so reads pass through unchanged
+        when(statusWriteBehindBuffer.overlay(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(statusWriteBehindBuffer.overlay(any(Optional.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
     @Test
     void updateStatusIfPaymentDoesNotExist_thenThrowsException() {
 
@@ -39,7 +128,7 @@ public class PaymentUTests {
         UUID userId = UUID.randomUUID();
         when(paymentRepository.findByEventIdAndUserId(eventId, userId)).thenReturn(Optional.empty());
 
-        assertThrows(RuntimeException.class, () -> paymentService.updateStatus(eventId, userId));
+        assertThrows(PaymentNotFoundException.class, () -> paymentService.updateStatus(eventId, userId));
     }
 
     @Test
@@ -51,8 +140,10 @@ public class PaymentUTests {
                 .eventId(eventId)
                 .userId(UUID.randomUUID())
                 .status(PaymentStatus.PENDING)
+                .type(PaymentType.SINGLE)
                 .build();
         when(paymentRepository.findByEventIdAndUserId(eventId, userId)).thenReturn(Optional.of(payment));
+        when(paymentRepository.save(payment)).thenReturn(payment);
 
         paymentService.updateStatus(eventId, userId);
 
@@ -70,8 +161,10 @@ public class PaymentUTests {
                 .eventId(eventId)
                 .userId(UUID.randomUUID())
                 .status(PaymentStatus.PAID)
+                .type(PaymentType.SINGLE)
                 .build();
         when(paymentRepository.findByEventIdAndUserId(eventId, userId)).thenReturn(Optional.of(payment));
+        when(paymentRepository.save(payment)).thenReturn(payment);
 
         paymentService.updateStatus(eventId, userId);
 
@@ -79,14 +172,43 @@ public class PaymentUTests {
         verify(paymentRepository).save(payment);
     }
 
+    @Test
+    void whenUpdateStatus_thenPaymentMovesBetweenSummaryCellsOfItsEventAndUser() {
+
+        UUID eventId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        Payment payment = Payment.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .amount(BigDecimal.TEN)
+                .type(PaymentType.SINGLE)
+                .status(PaymentStatus.PENDING)
+                .build();
+        when(paymentRepository.findByEventIdAndUserId(eventId, userId)).thenReturn(Optional.of(payment));
+        when(paymentRepository.save(payment)).thenReturn(payment);
+        ArgumentCaptor<PaymentSummaryChanges> changes = ArgumentCaptor.forClass(PaymentSummaryChanges.class);
+
+        paymentService.updateStatus(eventId, userId);
+
+        verify(paymentSummaryRepository).apply(changes.capture());
+        assertThat(changes.getValue().deltas())
+                .extracting(delta -> delta.getId().getOwnerType(), delta -> delta.getId().getStatus(),
+                        PaymentSummary::getPaymentCount, PaymentSummary::getAmountSum)
+                .containsExactlyInAnyOrder(
+                        tuple(SummaryOwner.EVENT, PaymentStatus.PENDING, -1L, BigDecimal.TEN.negate()),
+                        tuple(SummaryOwner.EVENT, PaymentStatus.PAID, 1L, BigDecimal.TEN),
+                        tuple(SummaryOwner.USER, PaymentStatus.PENDING, -1L, BigDecimal.TEN.negate()),
+                        tuple(SummaryOwner.USER, PaymentStatus.PAID, 1L, BigDecimal.TEN));
+    }
+
     @Test
     void getAllByUserId_whenPaymentsExist_thenReturnList() {
 
         UUID userId = UUID.randomUUID();
-        Payment payment1 = Payment.builder().userId(userId).build();
-        Payment payment2 = Payment.builder().userId(userId).build();
+        PaymentView payment1 = PaymentView.builder().id(UUID.randomUUID()).userId(userId).build();
+        PaymentView payment2 = PaymentView.builder().id(UUID.randomUUID()).userId(userId).build();
 
-        when(paymentRepository.findAllByUserId(userId))
+        when(paymentRepository.findViewsByUserId(userId))
                 .thenReturn(List.of(payment1, payment2));
 
         var result = paymentService.getAllByUserId(userId);
@@ -94,17 +216,17 @@ public class PaymentUTests {
         assertThat(result).hasSize(2);
         assertThat(result).containsExactly(payment1, payment2);
 
-        verify(paymentRepository).findAllByUserId(userId);
+        verify(paymentRepository).findViewsByUserId(userId);
     }
 
     @Test
     void getAllByEventId_whenPaymentsExist_thenReturnList() {
 
         UUID eventId = UUID.randomUUID();
-        Payment payment1 = Payment.builder().eventId(eventId).build();
-        Payment payment2 = Payment.builder().eventId(eventId).build();
+        PaymentView payment1 = PaymentView.builder().id(UUID.randomUUID()).eventId(eventId).build();
+        PaymentView payment2 = PaymentView.builder().id(UUID.randomUUID()).eventId(eventId).build();
 
-        when(paymentRepository.findAllByEventId(eventId))
+        when(paymentRepository.findViewsByEventId(eventId))
                 .thenReturn(List.of(payment1, payment2));
 
         var result = paymentService.getAllByEventId(eventId);
@@ -112,7 +234,108 @@ public class PaymentUTests {
         assertThat(result).hasSize(2);
         assertThat(result).containsExactly(payment1, payment2);
 
-        verify(paymentRepository).findAllByEventId(eventId);
+        verify(paymentRepository).findViewsByEventId(eventId);
+    }
+
+    @Test
+    void getAllByEventId_whenCalledConcurrently_thenCallersShareOneQuery() throws Exception {
+
+        UUID eventId = UUID.randomUUID();
+        PaymentView payment = PaymentView.builder().id(UUID.randomUUID()).eventId(eventId).build();
+        CountDownLatch queried = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        when(paymentRepository.findViewsByEventId(eventId)).thenAnswer(invocation -> {
+            queried.countDown();
+            release.await();
+            return List.of(payment);
+        });
+
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            Future<List<PaymentView>> first = callers.submit(() -> paymentService.getAllByEventId(eventId));
+            assertThat(queried.await(1, TimeUnit.SECONDS)).isTrue();
+            List<Future<List<PaymentView>>> others = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                others.add(callers.submit(() -> paymentService.getAllByEventId(eventId)));
+            }
+            while (meterRegistry.counter("payment.single_flight.calls", "query", "byEvent", "outcome", "coalesced").count() < 3) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            assertThat(first.get()).containsExactly(payment);
+            for (Future<List<PaymentView>> other : others) {
+                assertThat(other.get()).containsExactly(payment);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        verify(paymentRepository, times(1)).findViewsByEventId(eventId);
+    }
+
+    @Test
+    void getAllByEventId_whenWriteCommitsDuringSharedQuery_thenLaterCallersQueryAgain() throws Exception {
+
+        UUID eventId = UUID.randomUUID();
+        PaymentView before = PaymentView.builder().id(UUID.randomUUID()).eventId(eventId).build();
+        PaymentView after = PaymentView.builder().id(UUID.randomUUID()).eventId(eventId).build();
+        CountDownLatch queried = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        when(paymentRepository.findViewsByEventId(eventId))
+                .thenAnswer(invocation -> {
+                    queried.countDown();
+                    release.await();
+                    return List.of(before);
+                })
+                .thenReturn(List.of(before, after));
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<PaymentView>> first = callers.submit(() -> paymentService.getAllByEventId(eventId));
+            assertThat(queried.await(1, TimeUnit.SECONDS)).isTrue();
+
+            // The running query may have read before this write, so it is no longer shared
+            readRouting.written(List.of(new PaymentKey(eventId, UUID.randomUUID())));
+            List<PaymentView> later = callers.submit(() -> paymentService.getAllByEventId(eventId)).get(1, TimeUnit.SECONDS);
+            release.countDown();
+
+            assertThat(later).containsExactly(before, after);
+            assertThat(first.get()).containsExactly(before);
+        } finally {
+            callers.shutdownNow();
+        }
+
+        // The overtaken query finished last but did not replace the newer cached listing
+        assertThat(paymentService.getAllByEventId(eventId)).containsExactly(before, after);
+        verify(paymentRepository, times(2)).findViewsByEventId(eventId);
+        assertThat(meterRegistry.counter("payment.single_flight.calls", "query", "byEvent", "outcome", "coalesced").count())
+                .isZero();
+    }
+
+    @Test
+    void findPayment_whenWriteCommitsDuringQuery_thenResultIsNotCached() {
+
+        UUID eventId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        PaymentView pending = PaymentView.builder().eventId(eventId).userId(userId).status(PaymentStatus.PENDING).build();
+        PaymentView paid = PaymentView.builder().eventId(eventId).userId(userId).status(PaymentStatus.PAID).build();
+
+        when(paymentRepository.findViewByEventIdAndUserId(eventId, userId))
+                .thenAnswer(invocation -> {
+                    // The write commits after this read, and its eviction runs before the read's result returns
+                    readRouting.written(List.of(new PaymentKey(eventId, userId)));
+                    return Optional.of(pending);
+                })
+                .thenReturn(Optional.of(paid));
+
+        assertThat(paymentService.findPayment(eventId, userId)).contains(pending);
+        assertThat(paymentService.findPayment(eventId, userId)).contains(paid);
+        assertThat(paymentService.findPayment(eventId, userId)).contains(paid);
+
+        verify(paymentRepository, times(2)).findViewByEventIdAndUserId(eventId, userId);
     }
 
     @Test
@@ -122,12 +345,13 @@ public class PaymentUTests {
         UUID userId = UUID.randomUUID();
 
         Payment existingPayment = Payment.builder()
+                .id(UUID.randomUUID())
                 .eventId(eventId)
                 .userId(userId)
                 .amount(BigDecimal.TEN)
                 .status(PaymentStatus.PENDING)
+                .type(PaymentType.MONTHLY)
                 .createdOn(LocalDateTime.now())
-                .updatedOn(LocalDateTime.now())
                 .build();
 
         PaymentRequest request = PaymentRequest.builder()
@@ -138,20 +362,21 @@ public class PaymentUTests {
                 .type(PaymentType.SINGLE)
                 .build();
 
-        when(paymentRepository.findByEventIdAndUserId(eventId, userId))
+        when(paymentRepository.findForUpdateByEventIdAndUserId(eventId, userId))
                 .thenReturn(Optional.of(existingPayment));
 
-        when(paymentRepository.save(any(Payment.class)))
-                .thenAnswer(invocation -> invocation.getArgument(0));
-
         Payment result = paymentService.upsertPayment(request);
 
+        assertThat(result).isSameAs(existingPayment);
         assertThat(result.getAmount()).isEqualTo(BigDecimal.ONE);
         assertThat(result.getStatus()).isEqualTo(PaymentStatus.PAID);
         assertThat(result.getType()).isEqualTo(PaymentType.SINGLE);
         assertThat(result.getUpdatedOn()).isNotNull();
 
-        verify(paymentRepository).save(existingPayment);
+        verify(paymentRepository).insertIfAbsent(any(UUID.class), eq(eventId), eq(userId), isNull(),
+                eq(BigDecimal.ONE), eq("SINGLE"), eq("PAID"), any(LocalDateTime.class));
+        verify(paymentRepository, never()).save(any());
+        verify(paymentChangeRepository).save(argThat(change -> change.getChangeType() == PaymentChangeType.UPDATED));
     }
 
     @Test
@@ -169,11 +394,25 @@ public class PaymentUTests {
                 .type(PaymentType.SINGLE)
                 .build();
 
-        when(paymentRepository.findByEventIdAndUserId(eventId, userId))
-                .thenReturn(Optional.empty());
+        Payment createdPayment = Payment.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .username("testUser")
+                .amount(BigDecimal.TEN)
+                .status(PaymentStatus.PENDING)
+                .type(PaymentType.SINGLE)
+                .createdOn(LocalDateTime.now())
+                .updatedOn(LocalDateTime.now())
+                .build();
 
-        when(paymentRepository.save(any(Payment.class)))
-                .thenAnswer(invocation -> invocation.getArgument(0));
+        // The locking read finds the row this upsert inserted, with the id it generated
+        when(paymentRepository.insertIfAbsent(any(UUID.class), eq(eventId), eq(userId), any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    createdPayment.setId(invocation.getArgument(0));
+                    return 1;
+                });
+        when(paymentRepository.findForUpdateByEventIdAndUserId(eventId, userId))
+                .thenReturn(Optional.of(createdPayment));
 
         Payment result = paymentService.upsertPayment(request);
 
@@ -186,6 +425,238 @@ public class PaymentUTests {
         assertThat(result.getCreatedOn()).isNotNull();
         assertThat(result.getUpdatedOn()).isNotNull();
 
-        verify(paymentRepository).save(any(Payment.class));
+        verify(paymentRepository).insertIfAbsent(any(UUID.class), eq(eventId), eq(userId), eq("testUser"),
+                eq(BigDecimal.TEN), eq("SINGLE"), eq("PENDING"), any(LocalDateTime.class));
+        verify(paymentChangeRepository).save(argThat(change -> change.getChangeType() == PaymentChangeType.CREATED));
+    }
+
+    @Test
+    void upsertBatch_whenMixedRequests_thenReturnsOutcomePerItem_andFlushesPerChunk() {
+
+        paymentProperties.getBatch().setChunkSize(2);
+        UUID eventId = UUID.randomUUID();
+        UUID existingUserId = UUID.randomUUID();
+        UUID newUserId = UUID.randomUUID();
+
+        Payment existingPayment = Payment.builder()
+                .id(UUID.randomUUID())
+                .eventId(eventId)
+                .userId(existingUserId)
+                .amount(BigDecimal.TEN)
+                .status(PaymentStatus.PENDING)
+                .type(PaymentType.MONTHLY)
+                .build();
+
+        PaymentRequest update = PaymentRequest.builder()
+                .eventId(eventId)
+                .userId(existingUserId)
+                .amount(BigDecimal.ONE)
+                .status(PaymentStatus.PAID)
+                .type(PaymentType.MONTHLY)
+                .build();
+        PaymentRequest create = PaymentRequest.builder()
+                .eventId(eventId)
+                .userId(newUserId)
+                .amount(BigDecimal.TEN)
+                .status(PaymentStatus.PENDING)
+                .type(PaymentType.SINGLE)
+                .build();
+        PaymentRequest incomplete = PaymentRequest.builder()
+                .eventId(eventId)
+                .amount(BigDecimal.TEN)
+                .build();
+
+        // The existing key is skipped by the insert, so the locking read returns the stored row for it
+        List<Payment> inserted = new ArrayList<>();
+        doAnswer(invocation -> inserted.addAll(invocation.getArgument(0)))
+                .when(paymentRepository).insertAllIfAbsent(any());
+        when(paymentRepository.findAllForUpdateByEventIdAndUserIdIn(eq(eventId), any()))
+                .thenAnswer(invocation -> Stream.concat(Stream.of(existingPayment),
+                        inserted.stream().filter(payment -> payment.getUserId().equals(newUserId))).toList());
+
+        List<BatchOutcome> outcomes = paymentService.upsertBatch(List.of(update, create, incomplete));
+
+        assertThat(outcomes).containsExactly(BatchOutcome.UPDATED, BatchOutcome.CREATED, BatchOutcome.REJECTED);
+        assertThat(existingPayment.getAmount()).isEqualTo(BigDecimal.ONE);
+        assertThat(existingPayment.getStatus()).isEqualTo(PaymentStatus.PAID);
+        assertThat(inserted).extracting(Payment::getUserId).containsExactly(existingUserId, newUserId);
+        verify(entityManager, times(2)).flush();
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    void upsertBatch_whenMoreItemsThanAllowed_thenThrowsInvalidBatchException() {
+
+        paymentProperties.getBatch().setMaxItems(1);
+        PaymentRequest request = PaymentRequest.builder()
+                .eventId(UUID.randomUUID())
+                .userId(UUID.randomUUID())
+                .amount(BigDecimal.TEN)
+                .status(PaymentStatus.PENDING)
+                .type(PaymentType.SINGLE)
+                .build();
+
+        assertThrows(InvalidBatchException.class, () -> paymentService.upsertBatch(List.of(request, request)));
+        verifyNoInteractions(paymentRepository);
+    }
+
+    @Test
+    void getSliceByEventId_whenMoreRowsThanSize_thenReturnsSizeRowsAndHasNext() {
+
+        UUID eventId = UUID.randomUUID();
+        PaymentCursor after = new PaymentCursor(LocalDateTime.now(), UUID.randomUUID());
+        PaymentView payment1 = PaymentView.builder().id(UUID.randomUUID()).eventId(eventId).build();
+        PaymentView payment2 = PaymentView.builder().id(UUID.randomUUID()).eventId(eventId).build();
+        PaymentView payment3 = PaymentView.builder().id(UUID.randomUUID()).eventId(eventId).build();
+
+        when(paymentRepository.findViewsByEventIdAfter(eventId, after.createdOn(), after.id(), Limit.of(3)))
+                .thenReturn(List.of(payment1, payment2, payment3));
+
+        Slice<PaymentView> result = paymentService.getSliceByEventId(eventId, after, 2);
+
+        assertThat(result.getContent()).containsExactly(payment1, payment2);
+        assertThat(result.hasNext()).isTrue();
+    }
+
+    @Test
+    void exportByEventId_whenPaymentsStreamed_thenEachIsPassedOn() {
+
+        UUID eventId = UUID.randomUUID();
+        PaymentView payment1 = PaymentView.builder().eventId(eventId).userId(UUID.randomUUID()).build();
+        PaymentView payment2 = PaymentView.builder().eventId(eventId).userId(UUID.randomUUID()).build();
+        List<PaymentView> exported = new ArrayList<>();
+
+        when(paymentRepository.streamViewsByEventId(eventId)).thenReturn(Stream.of(payment1, payment2));
+
+        paymentService.exportByEventId(eventId, exported::add);
+
+        assertThat(exported).containsExactly(payment1, payment2);
+    }
+
+    @Test
+    void updateStatus_whenOptimisticLockFailsOnce_thenRetriesAndSucceeds() {
+
+        UUID eventId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        Payment stale = Payment.builder().eventId(eventId).userId(userId).type(PaymentType.SINGLE)
+                .status(PaymentStatus.PENDING).build();
+        Payment fresh = Payment.builder().eventId(eventId).userId(userId).type(PaymentType.SINGLE)
+                .status(PaymentStatus.PENDING).build();
+
+        when(paymentRepository.findByEventIdAndUserId(eventId, userId))
+                .thenReturn(Optional.of(stale))
+                .thenReturn(Optional.of(fresh));
+        when(paymentRepository.save(any(Payment.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Payment.class, UUID.randomUUID()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        Payment result = paymentService.updateStatus(eventId, userId);
+
+        assertThat(result).isSameAs(fresh);
+        assertEquals(PaymentStatus.PAID, result.getStatus());
+        verify(transactionTemplate, times(2)).execute(any());
+        assertThat(meterRegistry.counter("payment.status.conflicts").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("payment.status.changes", "operation", "toggle", "status", "PAID").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void updateStatus_whenOptimisticLockKeepsFailing_thenGivesUpAfterMaxAttempts() {
+
+        UUID eventId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        when(paymentRepository.findByEventIdAndUserId(eventId, userId))
+                .thenAnswer(invocation -> Optional.of(Payment.builder()
+                        .eventId(eventId).userId(userId).type(PaymentType.SINGLE).status(PaymentStatus.PAID).build()));
+        when(paymentRepository.save(any(Payment.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Payment.class, UUID.randomUUID()));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> paymentService.updateStatus(eventId, userId));
+
+        verify(transactionTemplate, times(3)).execute(any());
+    }
+
+    @Test
+    void transition_whenNoRowMatchesButPaymentExists_thenThrowsTransitionException() {
+
+        UUID eventId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        when(paymentRepository.transitionStatus(eq(eventId), eq(userId), eq(PaymentTransition.PAY.getFrom()),
+                eq(PaymentStatus.PAID), any(LocalDateTime.class))).thenReturn(0);
+        when(paymentRepository.existsByEventIdAndUserId(eventId, userId)).thenReturn(true);
+
+        assertThrows(PaymentTransitionException.class,
+                () -> paymentService.transition(eventId, userId, PaymentTransition.PAY));
+    }
+
+    @Test
+    void transition_whenRowUpdated_thenDoesNotLookUpPayment() {
+
+        UUID eventId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        when(paymentRepository.transitionStatus(eq(eventId), eq(userId), eq(Set.of(PaymentStatus.PENDING)),
+                eq(PaymentStatus.CANCELLED), any(LocalDateTime.class))).thenReturn(1);
+        when(paymentRepository.findViewByEventIdAndUserId(eventId, userId)).thenReturn(Optional.of(PaymentView.builder()
+                .eventId(eventId).userId(userId).amount(BigDecimal.TEN).type(PaymentType.SINGLE).build()));
+
+        paymentService.transition(eventId, userId, PaymentTransition.CANCEL);
+
+        verify(paymentRepository, never()).existsByEventIdAndUserId(any(), any());
+        verify(paymentRepository, never()).findByEventIdAndUserId(any(), any());
+        verify(paymentRepository, never()).transitionStatus(any(), any(), eq(Set.of(PaymentStatus.PAID)), any(), any());
+        assertThat(meterRegistry.counter("payment.status.changes", "operation", "transition", "status", "CANCELLED").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void lookup_shouldQueryUsersInChunksAndListEveryRequestedUser() {
+
+        paymentProperties.getLookup().setChunkSize(2);
+        UUID eventId = UUID.randomUUID();
+        UUID paidUser = UUID.randomUUID();
+        Set<UUID> userIds = Set.of(paidUser, UUID.randomUUID(), UUID.randomUUID());
+
+        when(paymentRepository.findViewsByUserIdIn(any())).thenAnswer(invocation ->
+                invocation.<List<UUID>>getArgument(0).contains(paidUser)
+                        ? List.of(PaymentView.builder().eventId(eventId).userId(paidUser).build())
+                        : List.of());
+
+        PaymentLookup lookup = paymentService.lookup(PaymentLookupRequest.builder().userIds(userIds).build());
+
+        verify(paymentRepository, times(2)).findViewsByUserIdIn(any());
+        assertThat(lookup.byUser()).containsOnlyKeys(userIds);
+        assertThat(lookup.byUser().get(paidUser)).extracting(PaymentView::eventId).containsExactly(eventId);
+        assertThat(lookup.byEvent()).isEmpty();
+        assertThat(lookup.payments()).isEmpty();
+    }
+
+    @Test
+    void lookup_shouldQueryPairsOfAllEventsInChunks() {
+
+        paymentProperties.getLookup().setChunkSize(2);
+        UUID eventId = UUID.randomUUID();
+        Set<PaymentKey> pairs = Set.of(new PaymentKey(eventId, UUID.randomUUID()),
+                new PaymentKey(eventId, UUID.randomUUID()), new PaymentKey(UUID.randomUUID(), UUID.randomUUID()));
+
+        paymentService.lookup(PaymentLookupRequest.builder().payments(pairs).build());
+
+        verify(paymentRepository).findViewsByPairs(argThat(chunk -> chunk.size() == 2));
+        verify(paymentRepository).findViewsByPairs(argThat(chunk -> chunk.size() == 1));
+    }
+
+    @Test
+    void lookup_whenTooManyKeys_thenThrowsInvalidLookupException() {
+
+        paymentProperties.getLookup().setMaxKeys(2);
+        PaymentLookupRequest request = PaymentLookupRequest.builder()
+                .userIds(Set.of(UUID.randomUUID(), UUID.randomUUID()))
+                .eventIds(Set.of(UUID.randomUUID()))
+                .build();
+
+        assertThrows(InvalidLookupException.class, () -> paymentService.lookup(request));
+        verifyNoInteractions(paymentRepository);
     }
 }
@@ -0,0 +1,152 @@
+package event.payment.service;
+
+import event.payment.model.BatchOutcome;
+import event.payment.model.PaymentChange;
+import event.payment.model.PaymentChangeType;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentSummary;
+import event.payment.model.PaymentType;
+import event.payment.repository.PaymentChangeRepository;
+import event.payment.repository.PaymentRepository;
+import event.payment.repository.PaymentSummaryRepository;
+import event.payment.web.dto.PaymentRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+// Not @Transactional: each upsert must run and commit in its own transaction on its own thread
+@SpringBootTest
+@ActiveProfiles("test")
+public class PaymentUpsertITest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentSummaryRepository paymentSummaryRepository;
+
+    @Autowired
+    private PaymentChangeRepository paymentChangeRepository;
+
+    private UUID eventId;
+
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        paymentRepository.deleteAll();
+        paymentSummaryRepository.deleteAll();
+        paymentChangeRepository.deleteAll();
+
+        eventId = UUID.randomUUID();
+        userId = UUID.randomUUID();
+    }
+
+    @Test
+    void upsertBatch_whenFirstInsertsRace_shouldCreateEachPaymentOnce() throws Exception {
+
+        // The same new keys in every batch, one of them without a username or amount
+        List<PaymentRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            requests.add(PaymentRequest.builder()
+                    .eventId(eventId)
+                    .userId(i == 0 ? userId : UUID.randomUUID())
+                    .username(i == 0 ? null : "racer")
+                    .amount(i == 0 ? null : BigDecimal.TEN)
+                    .type(PaymentType.SINGLE)
+                    .status(PaymentStatus.PENDING)
+                    .build());
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<BatchOutcome> outcomes = new ArrayList<>();
+        try {
+            List<Future<List<BatchOutcome>>> batches = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                batches.add(executor.submit(() -> {
+                    start.await();
+                    return paymentService.upsertBatch(requests);
+                }));
+            }
+            start.countDown();
+            for (Future<List<BatchOutcome>> batch : batches) {
+                outcomes.addAll(batch.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(paymentRepository.findAllByEventId(eventId)).hasSize(5);
+        assertThat(outcomes).filteredOn(outcome -> outcome == BatchOutcome.CREATED).hasSize(5);
+        assertThat(outcomes).filteredOn(outcome -> outcome == BatchOutcome.UPDATED).hasSize(5 * (THREADS - 1));
+        assertThat(paymentService.getSummaryByEventId(eventId))
+                .extracting(summary -> summary.getId().getStatus(), PaymentSummary::getPaymentCount,
+                        PaymentSummary::getAmountSum)
+                .containsExactly(tuple(PaymentStatus.PENDING, 5L, new BigDecimal("40.00")));
+    }
+
+    @Test
+    void upsertPayment_whenFirstInsertsRace_shouldCreateOnceAndCountOnce() throws Exception {
+
+        PaymentRequest request = PaymentRequest.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .username("racer")
+                .amount(BigDecimal.TEN)
+                .type(PaymentType.SINGLE)
+                .status(PaymentStatus.PENDING)
+                .build();
+
+        // All threads start together on a key none of them can see yet
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> upserts = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                upserts.add(executor.submit(() -> {
+                    start.await();
+                    return paymentService.upsertPayment(request);
+                }));
+            }
+            start.countDown();
+            for (Future<?> upsert : upserts) {
+                upsert.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(paymentRepository.findAllByEventId(eventId)).hasSize(1);
+        assertThat(paymentChangeRepository.findAll())
+                .extracting(PaymentChange::getChangeType)
+                .containsOnly(PaymentChangeType.CREATED, PaymentChangeType.UPDATED)
+                .hasSize(THREADS)
+                .filteredOn(changeType -> changeType == PaymentChangeType.CREATED)
+                .hasSize(1);
+        assertThat(paymentService.getSummaryByEventId(eventId))
+                .extracting(summary -> summary.getId().getStatus(), PaymentSummary::getPaymentCount,
+                        PaymentSummary::getAmountSum)
+                .containsExactly(tuple(PaymentStatus.PENDING, 1L, new BigDecimal("10.00")));
+    }
+}
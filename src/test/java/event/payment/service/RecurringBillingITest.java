@@ -0,0 +1,148 @@
+package event.payment.service;
+
+import event.payment.config.PaymentProperties;
+import event.payment.model.Payment;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentSummary;
+import event.payment.model.PaymentType;
+import event.payment.model.RecurringBillingRun;
+import event.payment.repository.PaymentChangeRepository;
+import event.payment.repository.PaymentRepository;
+import event.payment.repository.PaymentSummaryRepository;
+import event.payment.repository.RecurringBillingRunRepository;
+import event.payment.web.dto.PaymentRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+// Not @Transactional: the job renews chunks on its own worker threads, each in its own transaction
+@SpringBootTest
+@ActiveProfiles("test")
+public class RecurringBillingITest {
+
+    private static final YearMonth NEXT_MONTH = YearMonth.now().plusMonths(1);
+
+    @Autowired
+    private RecurringBillingJob recurringBillingJob;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentSummaryRepository paymentSummaryRepository;
+
+    @Autowired
+    private PaymentChangeRepository paymentChangeRepository;
+
+    @Autowired
+    private RecurringBillingRunRepository recurringBillingRunRepository;
+
+    @Autowired
+    private PaymentProperties paymentProperties;
+
+    private UUID eventId;
+
+    @BeforeEach
+    void setUp() {
+        paymentRepository.deleteAll();
+        paymentSummaryRepository.deleteAll();
+        paymentChangeRepository.deleteAll();
+        recurringBillingRunRepository.deleteAll();
+
+        paymentProperties.getRecurring().setChunkSize(4);
+        paymentProperties.getRecurring().setWorkers(3);
+        eventId = UUID.randomUUID();
+    }
+
+    @Test
+    void run_shouldRenewPaidMonthlyPaymentsOnceAndKeepTotalsInStep() {
+
+        List<PaymentRequest> requests = new ArrayList<>(requests(25, PaymentType.MONTHLY, PaymentStatus.PAID));
+        requests.addAll(requests(1, PaymentType.SINGLE, PaymentStatus.PAID));
+        requests.addAll(requests(1, PaymentType.MONTHLY, PaymentStatus.CANCELLED));
+        paymentService.upsertBatch(requests);
+
+        RecurringBillingRun run = recurringBillingJob.run(NEXT_MONTH);
+
+        assertThat(run.getRenewed()).isEqualTo(25);
+        assertThat(run.getCompletedOn()).isNotNull();
+        assertThat(paymentRepository.findAllByEventId(eventId))
+                .filteredOn(payment -> payment.getStatus() == PaymentStatus.PENDING)
+                .hasSize(25)
+                .allMatch(payment -> payment.getType() == PaymentType.MONTHLY);
+        assertThat(paymentService.getSummaryByEventId(eventId))
+                .filteredOn(summary -> summary.getId().getStatus() == PaymentStatus.PAID)
+                .extracting(summary -> summary.getId().getType(), PaymentSummary::getPaymentCount)
+                .containsExactlyInAnyOrder(tuple(PaymentType.MONTHLY, 0L), tuple(PaymentType.SINGLE, 1L));
+        assertThat(paymentChangeRepository.count()).isEqualTo(27 + 25);
+
+        // A completed month is not renewed again
+        assertThat(recurringBillingJob.run(NEXT_MONTH).getRenewed()).isEqualTo(25);
+        assertThat(paymentChangeRepository.count()).isEqualTo(27 + 25);
+    }
+
+    @Test
+    void run_whenInterrupted_shouldResumeAfterCheckpoint() {
+
+        paymentService.upsertBatch(requests(12, PaymentType.MONTHLY, PaymentStatus.PAID));
+        List<UUID> ids = paymentRepository.findAllByEventId(eventId).stream()
+                .map(Payment::getId)
+                .sorted(Comparator.comparing(RecurringBillingITest::unsigned))
+                .toList();
+
+        // As if a previous run had renewed the first five payments and then died
+        recurringBillingRunRepository.save(RecurringBillingRun.builder()
+                .period(NEXT_MONTH.atDay(1))
+                .checkpoint(ids.get(4))
+                .renewed(5)
+                .startedOn(LocalDateTime.now())
+                .build());
+
+        RecurringBillingRun run = recurringBillingJob.run(NEXT_MONTH);
+
+        assertThat(run.getRenewed()).isEqualTo(12);
+        assertThat(run.getCheckpoint()).isEqualTo(ids.get(11));
+        assertThat(paymentRepository.findAllById(ids.subList(0, 5)))
+                .extracting(Payment::getStatus)
+                .containsOnly(PaymentStatus.PAID);
+        assertThat(paymentRepository.findAllById(ids.subList(5, 12)))
+                .extracting(Payment::getStatus)
+                .containsOnly(PaymentStatus.PENDING);
+    }
+
+    private List<PaymentRequest> requests(int count, PaymentType type, PaymentStatus status) {
+
+        return IntStream.range(0, count)
+                .mapToObj(i -> PaymentRequest.builder()
+                        .eventId(eventId)
+                        .userId(UUID.randomUUID())
+                        .username("user" + i)
+                        .amount(BigDecimal.TEN)
+                        .type(type)
+                        .status(status)
+                        .build())
+                .toList();
+    }
+
+    // The database orders BINARY(16)/UUID ids as unsigned bytes, unlike UUID.compareTo
+    private static String unsigned(UUID id) {
+        return id.toString();
+    }
+}
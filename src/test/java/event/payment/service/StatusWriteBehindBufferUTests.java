@@ -0,0 +1,242 @@
+package event.payment.service;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import event.payment.config.CacheConfig;
+import event.payment.config.PaymentProperties;
+import event.payment.config.ReadRouting;
+import event.payment.exception.StatusChangeInDoubtException;
+import event.payment.exception.StatusChangeWithdrawnException;
+import event.payment.model.Payment;
+import event.payment.model.PaymentKey;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentType;
+import event.payment.model.PaymentView;
+import event.payment.repository.PaymentChangeRepository;
+import event.payment.repository.PaymentRepository;
+import event.payment.repository.PaymentSummaryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+public class StatusWriteBehindBufferUTests {
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private PaymentSummaryRepository paymentSummaryRepository;
+
+    @Mock
+    private PaymentChangeRepository paymentChangeRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final PaymentProperties paymentProperties = new PaymentProperties();
+
+    private StatusWriteBehindBuffer buffer;
+
+    private UUID eventId;
+    private UUID userId;
+    private Payment stored;
+
+    @BeforeEach
+    void setUp() {
+
+        eventId = UUID.randomUUID();
+        userId = UUID.randomUUID();
+        stored = Payment.builder()
+                .eventId(eventId).userId(userId).type(PaymentType.SINGLE).status(PaymentStatus.PENDING).build();
+
+        when(paymentRepository.findByEventIdAndUserId(eventId, userId)).thenReturn(Optional.of(stored));
+        when(paymentRepository.findAllByEventIdAndUserIdIn(eq(eventId), anyCollection())).thenReturn(List.of(stored));
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        paymentProperties.getWriteBehind().setEnabled(true);
+        paymentProperties.getWriteBehind().setFlushInterval(Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        buffer.shutdown();
+    }
+
+    @Test
+    void toggle_whenRepeatedBeforeFlush_thenReadsOnceAndWritesFinalStatusOnce() {
+
+        buffer = newBuffer();
+
+        assertThat(buffer.toggle(eventId, userId).getStatus()).isEqualTo(PaymentStatus.PAID);
+        assertThat(buffer.toggle(eventId, userId).getStatus()).isEqualTo(PaymentStatus.PENDING);
+        assertThat(buffer.toggle(eventId, userId).getStatus()).isEqualTo(PaymentStatus.PAID);
+        assertThat(stored.getStatus()).isEqualTo(PaymentStatus.PENDING);
+
+        buffer.flush();
+
+        assertThat(stored.getStatus()).isEqualTo(PaymentStatus.PAID);
+        verify(paymentRepository, times(1)).findByEventIdAndUserId(eventId, userId);
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+        verify(paymentSummaryRepository, times(1)).apply(any());
+        assertThat(meterRegistry.counter("payment.write_behind.coalesced").count()).isEqualTo(2);
+    }
+
+    @Test
+    void discard_whenDirectWriteSupersedesToggle_thenNothingIsFlushed() {
+
+        buffer = newBuffer();
+        buffer.toggle(eventId, userId);
+
+        buffer.discard(List.of(new PaymentKey(eventId, userId)));
+        buffer.flush();
+
+        verify(transactionTemplate, never()).executeWithoutResult(any());
+        assertThat(stored.getStatus()).isEqualTo(PaymentStatus.PENDING);
+    }
+
+    @Test
+    void toggle_whenDurableOnAck_thenReturnsOnlyAfterFlushCommits() throws Exception {
+
+        paymentProperties.getWriteBehind().setDurableOnAck(true);
+        buffer = newBuffer();
+
+        CompletableFuture<Payment> toggled = CompletableFuture.supplyAsync(() -> buffer.toggle(eventId, userId));
+        Thread.sleep(100);
+        assertThat(toggled).isNotDone();
+
+        buffer.flush();
+
+        assertThat(toggled.get().getStatus()).isEqualTo(PaymentStatus.PAID);
+        assertThat(stored.getStatus()).isEqualTo(PaymentStatus.PAID);
+    }
+
+    @Test
+    void toggle_whenDurableOnAckTimesOutBeforeFlush_thenWithdrawsTheToggle() {
+
+        paymentProperties.getWriteBehind().setDurableOnAck(true);
+        paymentProperties.getWriteBehind().setAckTimeout(Duration.ofMillis(50));
+        buffer = newBuffer();
+        PaymentView read = PaymentView.builder()
+                .eventId(eventId).userId(userId).type(PaymentType.SINGLE).status(PaymentStatus.PENDING).build();
+
+        assertThatThrownBy(() -> buffer.toggle(eventId, userId)).isInstanceOf(StatusChangeWithdrawnException.class);
+
+        // Nothing is left to show or to flush, so a retry starts from the stored status again
+        assertThat(buffer.overlay(List.of(read))).containsExactly(read);
+        buffer.flush();
+        verify(transactionTemplate, never()).executeWithoutResult(any());
+        assertThat(stored.getStatus()).isEqualTo(PaymentStatus.PENDING);
+    }
+
+    @Test
+    void toggle_whenDurableOnAckTimesOutDuringFlush_thenReportsOutcomeInDoubtAndStillCommits() throws Exception {
+
+        paymentProperties.getWriteBehind().setDurableOnAck(true);
+        paymentProperties.getWriteBehind().setAckTimeout(Duration.ofMillis(200));
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        buffer = newBuffer();
+        PaymentView read = PaymentView.builder()
+                .eventId(eventId).userId(userId).type(PaymentType.SINGLE).status(PaymentStatus.PENDING).build();
+
+        CompletableFuture<Payment> toggled = CompletableFuture.supplyAsync(() -> buffer.toggle(eventId, userId));
+        while (buffer.overlay(Optional.of(read)).map(PaymentView::status).orElseThrow() != PaymentStatus.PAID) {
+            Thread.sleep(10);
+        }
+        CompletableFuture<Void> flushing = CompletableFuture.runAsync(buffer::flush);
+        assertThat(writing.await(1, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> toggled.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(StatusChangeInDoubtException.class);
+
+        release.countDown();
+        flushing.get(1, TimeUnit.SECONDS);
+        assertThat(stored.getStatus()).isEqualTo(PaymentStatus.PAID);
+    }
+
+    @Test
+    void toggle_whenWriteCommitsWhileReading_thenReadsAgain() {
+
+        Payment written = Payment.builder()
+                .eventId(eventId).userId(userId).type(PaymentType.SINGLE).status(PaymentStatus.PAID).version(1L).build();
+        // An upsert setting PAID commits after the first read returned the previous status
+        when(paymentRepository.findByEventIdAndUserId(eventId, userId))
+                .thenAnswer(invocation -> {
+                    buffer.discard(List.of(new PaymentKey(eventId, userId)));
+                    return Optional.of(stored);
+                })
+                .thenReturn(Optional.of(written));
+        buffer = newBuffer();
+
+        assertThat(buffer.toggle(eventId, userId).getStatus()).isEqualTo(PaymentStatus.PENDING);
+        verify(paymentRepository, times(2)).findByEventIdAndUserId(eventId, userId);
+    }
+
+    @Test
+    void overlay_whenToggleIsBuffered_thenReadsShowItUntilFlushed() {
+
+        buffer = newBuffer();
+        PaymentView read = PaymentView.builder()
+                .eventId(eventId).userId(userId).type(PaymentType.SINGLE).status(PaymentStatus.PENDING).build();
+        PaymentView other = PaymentView.builder()
+                .eventId(eventId).userId(UUID.randomUUID()).type(PaymentType.SINGLE).status(PaymentStatus.PENDING).build();
+
+        buffer.toggle(eventId, userId);
+
+        assertThat(buffer.overlay(List.of(read, other)))
+                .extracting(PaymentView::status)
+                .containsExactly(PaymentStatus.PAID, PaymentStatus.PENDING);
+        assertThat(buffer.overlay(Optional.of(read))).map(PaymentView::status).contains(PaymentStatus.PAID);
+
+        buffer.flush();
+
+        assertThat(buffer.overlay(List.of(read))).containsExactly(read);
+    }
+
+    private StatusWriteBehindBuffer newBuffer() {
+
+        return new StatusWriteBehindBuffer(paymentRepository, paymentSummaryRepository, paymentChangeRepository,
+                transactionTemplate,
+                new ConcurrentMapCacheManager(CacheConfig.PAYMENTS_BY_EVENT, CacheConfig.PAYMENTS_BY_USER, CacheConfig.PAYMENT),
+                new ReadRouting(paymentProperties, mock(PlatformTransactionManager.class), meterRegistry, Ticker.systemTicker()), meterRegistry,
+                paymentProperties);
+    }
+}
@@ -0,0 +1,116 @@
+package event.payment.service;
+
+import event.payment.exception.PaymentTransitionException;
+import event.payment.model.Payment;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentTransition;
+import event.payment.model.PaymentType;
+import event.payment.model.PaymentView;
+import event.payment.repository.PaymentChangeRepository;
+import event.payment.repository.PaymentRepository;
+import event.payment.repository.PaymentSummaryRepository;
+import event.payment.web.dto.PaymentRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Not @Transactional: what the buffer keeps depends on whether the caller's transaction commits or rolls back
+@SpringBootTest(properties = {
+        "payment.write-behind.enabled=true",
+        "payment.write-behind.flush-interval=1h"
+})
+@ActiveProfiles("test")
+public class StatusWriteBehindITest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private StatusWriteBehindBuffer statusWriteBehindBuffer;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentSummaryRepository paymentSummaryRepository;
+
+    @Autowired
+    private PaymentChangeRepository paymentChangeRepository;
+
+    private UUID eventId;
+
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        paymentRepository.deleteAll();
+        paymentSummaryRepository.deleteAll();
+        paymentChangeRepository.deleteAll();
+
+        eventId = UUID.randomUUID();
+        userId = UUID.randomUUID();
+        paymentService.upsertPayment(PaymentRequest.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .username("buffered")
+                .amount(BigDecimal.TEN)
+                .type(PaymentType.SINGLE)
+                .status(PaymentStatus.PENDING)
+                .build());
+    }
+
+    @Test
+    void transition_whenItFails_shouldKeepTheBufferedToggle() {
+
+        assertThat(paymentService.updateStatus(eventId, userId).getStatus()).isEqualTo(PaymentStatus.PAID);
+
+        // PAY writes the buffered toggle first, then finds the payment already PAID and rolls both back
+        assertThatThrownBy(() -> paymentService.transition(eventId, userId, PaymentTransition.PAY))
+                .isInstanceOf(PaymentTransitionException.class);
+        assertThat(stored().getStatus()).isEqualTo(PaymentStatus.PENDING);
+
+        statusWriteBehindBuffer.flush();
+
+        assertThat(stored().getStatus()).isEqualTo(PaymentStatus.PAID);
+    }
+
+    @Test
+    void transition_whenItCommits_shouldApplyOnTopOfTheBufferedToggle() {
+
+        paymentService.updateStatus(eventId, userId);
+
+        paymentService.transition(eventId, userId, PaymentTransition.REVERT);
+        statusWriteBehindBuffer.flush();
+
+        assertThat(stored().getStatus()).isEqualTo(PaymentStatus.PENDING);
+    }
+
+    @Test
+    void reads_whenToggleIsBuffered_shouldShowTheBufferedStatus() {
+
+        // Cached before the toggle, so the read after it must not be served the cached status
+        assertThat(paymentService.getAllByEventId(eventId)).extracting(PaymentView::status)
+                .containsExactly(PaymentStatus.PENDING);
+
+        paymentService.updateStatus(eventId, userId);
+
+        assertThat(stored().getStatus()).isEqualTo(PaymentStatus.PENDING);
+        assertThat(paymentService.findPayment(eventId, userId)).map(PaymentView::status).contains(PaymentStatus.PAID);
+        assertThat(paymentService.getAllByEventId(eventId)).extracting(PaymentView::status)
+                .containsExactly(PaymentStatus.PAID);
+        assertThat(paymentService.getAllByUserId(userId)).extracting(PaymentView::status)
+                .containsExactly(PaymentStatus.PAID);
+    }
+
+    private Payment stored() {
+        return paymentRepository.findByEventIdAndUserId(eventId, userId).orElseThrow();
+    }
+}
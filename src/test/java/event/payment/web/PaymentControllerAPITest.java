@@ -1,9 +1,13 @@
 package event.payment.web;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import event.payment.model.BatchOutcome;
 import event.payment.model.Payment;
 import event.payment.model.PaymentStatus;
 import event.payment.model.PaymentType;
+import event.payment.model.PaymentView;
+import event.payment.service.IdempotencyService;
+import event.payment.service.PaymentImportService;
 import event.payment.service.PaymentService;
 import event.payment.web.dto.PaymentRequest;
 import org.junit.jupiter.api.Test;
@@ -12,15 +16,21 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -32,6 +42,12 @@ public class PaymentControllerAPITest {
     @MockitoBean
     private PaymentService paymentService;
 
+    @MockitoBean
+    private PaymentImportService paymentImportService;
+
+    @MockitoBean
+    private IdempotencyService idempotencyService;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -105,7 +121,7 @@ public class PaymentControllerAPITest {
 
         UUID eventId = UUID.randomUUID();
 
-        Payment payment = Payment.builder()
+        PaymentView payment = PaymentView.builder()
                 .eventId(eventId)
                 .status(PaymentStatus.PENDING)
                 .build();
@@ -119,4 +135,96 @@ public class PaymentControllerAPITest {
 
         verify(paymentService).getAllByEventId(eventId);
     }
+
+    @Test
+    void postUpsertPayments_shouldReturn200AndOutcomePerItem() throws Exception {
+
+        UUID eventId = UUID.randomUUID();
+
+        List<PaymentRequest> dtos = List.of(
+                PaymentRequest.builder()
+                        .eventId(eventId)
+                        .userId(UUID.randomUUID())
+                        .amount(BigDecimal.TEN)
+                        .type(PaymentType.SINGLE)
+                        .status(PaymentStatus.PENDING)
+                        .build(),
+                PaymentRequest.builder()
+                        .eventId(eventId)
+                        .build());
+
+        when(paymentService.upsertBatch(any())).thenReturn(List.of(BatchOutcome.CREATED, BatchOutcome.REJECTED));
+
+        mockMvc.perform(post("/api/v1/payments/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsBytes(dtos)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.updated").value(0))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.items[0].index").value(0))
+                .andExpect(jsonPath("$.items[0].outcome").value("CREATED"))
+                .andExpect(jsonPath("$.items[1].eventId").value(eventId.toString()))
+                .andExpect(jsonPath("$.items[1].outcome").value("REJECTED"));
+
+        verify(paymentService).upsertBatch(any());
+    }
+
+    @Test
+    void getScrollByEventId_whenCursorIsInvalid_shouldReturn400() throws Exception {
+
+        mockMvc.perform(get("/api/v1/payments/event/{eventId}/scroll", UUID.randomUUID())
+                        .param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid cursor: not-a-cursor"));
+    }
+
+    @Test
+    void getExportByEventId_shouldStreamJsonArrayOfPayments() throws Exception {
+
+        UUID eventId = UUID.randomUUID();
+        PaymentView payment1 = PaymentView.builder().eventId(eventId).userId(UUID.randomUUID()).status(PaymentStatus.PAID).build();
+        PaymentView payment2 = PaymentView.builder().eventId(eventId).userId(UUID.randomUUID()).status(PaymentStatus.PENDING).build();
+
+        doAnswer(invocation -> {
+            Consumer<PaymentView> consumer = invocation.getArgument(1);
+            consumer.accept(payment1);
+            consumer.accept(payment2);
+            return null;
+        }).when(paymentService).exportByEventId(eq(eventId), any());
+
+        MvcResult result = mockMvc.perform(get("/api/v1/payments/event/{eventId}/export", eventId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].userId").value(payment1.userId().toString()))
+                .andExpect(jsonPath("$[0].status").value("PAID"))
+                .andExpect(jsonPath("$[1].status").value("PENDING"));
+    }
+
+    @Test
+    void getPayment_whenFound_shouldReturn200_otherwise404() throws Exception {
+
+        UUID eventId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        PaymentView payment = PaymentView.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .status(PaymentStatus.PAID)
+                .build();
+
+        when(paymentService.findPayment(eventId, userId)).thenReturn(Optional.of(payment));
+
+        mockMvc.perform(get("/api/v1/payments/{eventId}/{userId}", eventId, userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.userId").value(userId.toString()))
+                .andExpect(jsonPath("$.status").value("PAID"));
+
+        mockMvc.perform(get("/api/v1/payments/{eventId}/{userId}", eventId, UUID.randomUUID()))
+                .andExpect(status().isNotFound());
+    }
 }
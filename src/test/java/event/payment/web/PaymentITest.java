@@ -1,33 +1,53 @@
 package event.payment.web;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import event.payment.config.CacheConfig;
 import event.payment.model.Payment;
+import event.payment.model.PaymentKey;
+import event.payment.model.PaymentChange;
+import event.payment.model.PaymentChangeType;
 import event.payment.model.PaymentStatus;
 import event.payment.model.PaymentType;
+import event.payment.repository.PaymentArchiveRepository;
+import event.payment.repository.PaymentChangeRepository;
 import event.payment.repository.PaymentRepository;
+import event.payment.service.PaymentArchiver;
+import event.payment.service.PaymentChangeRelay;
+import event.payment.web.dto.PaymentLookupRequest;
 import event.payment.web.dto.PaymentRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
 @AutoConfigureMockMvc(addFilters = false)
+@AutoConfigureObservability(tracing = false)
 @ActiveProfiles("test")
 @Transactional
+@RecordApplicationEvents
 public class PaymentITest {
 
     @Autowired
@@ -39,12 +59,31 @@ public class PaymentITest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PaymentChangeRepository paymentChangeRepository;
+
+    @Autowired
+    private PaymentChangeRelay paymentChangeRelay;
+
+    @Autowired
+    private PaymentArchiver paymentArchiver;
+
+    @Autowired
+    private PaymentArchiveRepository paymentArchiveRepository;
+
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
     private UUID eventId;
     private UUID userId;
 
     @BeforeEach
     void setUp() {
         paymentRepository.deleteAll();
+        paymentChangeRepository.deleteAll();
 
         eventId = UUID.randomUUID();
         userId = UUID.randomUUID();
@@ -74,11 +113,51 @@ public class PaymentITest {
         List<Payment> all = paymentRepository.findAllByEventId(eventId);
         assertThat(all).hasSize(1);
         Payment persisted = all.get(0);
+        assertThat(persisted.getId().version()).isEqualTo(7);
         assertThat(persisted.getUserId()).isEqualTo(userId);
         assertThat(persisted.getAmount()).isEqualByComparingTo(BigDecimal.valueOf(15));
         assertThat(persisted.getStatus()).isEqualTo(PaymentStatus.PENDING);
     }
 
+    @Test
+    void postUpsertPayment_twiceForSameEventAndUser_shouldUpdateSingleRow() throws Exception {
+        PaymentRequest first = PaymentRequest.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .username("integrationUser")
+                .amount(BigDecimal.valueOf(15))
+                .type(PaymentType.SINGLE)
+                .status(PaymentStatus.PENDING)
+                .build();
+        PaymentRequest second = PaymentRequest.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .username("integrationUser")
+                .amount(BigDecimal.valueOf(30))
+                .type(PaymentType.MONTHLY)
+                .status(PaymentStatus.PAID)
+                .build();
+
+        mockMvc.perform(post("/api/v1/payments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(first)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/api/v1/payments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(second)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.username").value("integrationUser"))
+                .andExpect(jsonPath("$.amount").value(30))
+                .andExpect(jsonPath("$.type").value("MONTHLY"))
+                .andExpect(jsonPath("$.status").value("PAID"));
+
+        List<Payment> all = paymentRepository.findAllByEventId(eventId);
+        assertThat(all).hasSize(1);
+        assertThat(all.get(0).getAmount()).isEqualByComparingTo(BigDecimal.valueOf(30));
+        assertThat(all.get(0).getStatus()).isEqualTo(PaymentStatus.PAID);
+    }
+
     @Test
     void getPaymentsByEventId_shouldReturnPersistedPayments() throws Exception {
 
@@ -134,5 +213,525 @@ public class PaymentITest {
         Payment toggledBack = paymentRepository.findByEventIdAndUserId(eventId, userId).orElseThrow();
         assertThat(toggledBack.getStatus()).isEqualTo(PaymentStatus.PENDING);
     }
-}
 
+    @Test
+    void postUpsertPayments_shouldCreateAndUpdateInOneCall() throws Exception {
+
+        Payment existing = Payment.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .username("existingUser")
+                .amount(BigDecimal.valueOf(5))
+                .status(PaymentStatus.PENDING)
+                .type(PaymentType.MONTHLY)
+                .build();
+        paymentRepository.save(existing);
+
+        UUID newUserId = UUID.randomUUID();
+        List<PaymentRequest> requests = List.of(
+                PaymentRequest.builder()
+                        .eventId(eventId)
+                        .userId(userId)
+                        .amount(BigDecimal.valueOf(7))
+                        .type(PaymentType.MONTHLY)
+                        .status(PaymentStatus.PAID)
+                        .build(),
+                PaymentRequest.builder()
+                        .eventId(eventId)
+                        .userId(newUserId)
+                        .username("newUser")
+                        .amount(BigDecimal.valueOf(9))
+                        .type(PaymentType.SINGLE)
+                        .status(PaymentStatus.PENDING)
+                        .build());
+
+        mockMvc.perform(post("/api/v1/payments/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(requests)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.items[0].outcome").value("UPDATED"))
+                .andExpect(jsonPath("$.items[1].outcome").value("CREATED"));
+
+        assertThat(paymentRepository.findAllByEventId(eventId)).hasSize(2);
+        Payment updated = paymentRepository.findByEventIdAndUserId(eventId, userId).orElseThrow();
+        assertThat(updated.getAmount()).isEqualByComparingTo(BigDecimal.valueOf(7));
+        assertThat(updated.getStatus()).isEqualTo(PaymentStatus.PAID);
+        Payment created = paymentRepository.findByEventIdAndUserId(eventId, newUserId).orElseThrow();
+        assertThat(created.getUsername()).isEqualTo("newUser");
+    }
+
+    @Test
+    void postImportNdjson_shouldPersistEveryRow() throws Exception {
+
+        String ndjson = """
+                {"eventId":"%s","userId":"%s","username":"a","amount":10,"type":"SINGLE","status":"PENDING"}
+                {"eventId":"%s","userId":"%s","username":"b","amount":20,"type":"MONTHLY","status":"PAID"}
+                """.formatted(eventId, userId, eventId, UUID.randomUUID());
+
+        mockMvc.perform(post("/api/v1/payments/import")
+                        .contentType("application/x-ndjson")
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.processed").value(2))
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.chunks").value(1));
+
+        assertThat(paymentRepository.findAllByEventId(eventId)).hasSize(2);
+    }
+
+    @Test
+    void postImportCsv_shouldPersistEveryRow() throws Exception {
+
+        String csv = """
+                eventId,userId,username,amount,type,status
+                %s,%s,a,10,SINGLE,PENDING
+                """.formatted(eventId, userId);
+
+        mockMvc.perform(post("/api/v1/payments/import")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.processed").value(1))
+                .andExpect(jsonPath("$.created").value(1));
+
+        Payment persisted = paymentRepository.findByEventIdAndUserId(eventId, userId).orElseThrow();
+        assertThat(persisted.getUsername()).isEqualTo("a");
+        assertThat(persisted.getStatus()).isEqualTo(PaymentStatus.PENDING);
+    }
+
+    @Test
+    void postImportNdjson_whenRowIsMalformed_shouldReturnBadRequest() throws Exception {
+
+        mockMvc.perform(post("/api/v1/payments/import")
+                        .contentType("application/x-ndjson")
+                        .content("{\"eventId\": broken"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(org.hamcrest.Matchers.startsWith("Import stopped after 0 rows")));
+    }
+
+    @Test
+    void getScrollByEventId_shouldWalkAllPaymentsWithNextCursor() throws Exception {
+
+        for (int i = 0; i < 5; i++) {
+            paymentRepository.save(Payment.builder()
+                    .eventId(eventId)
+                    .userId(UUID.randomUUID())
+                    .amount(BigDecimal.valueOf(i))
+                    .status(PaymentStatus.PENDING)
+                    .type(PaymentType.SINGLE)
+                    .build());
+        }
+
+        Set<String> seenUserIds = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            var request = get("/api/v1/payments/event/{eventId}/scroll", eventId).param("size", "2");
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            String body = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            var page = objectMapper.readTree(body);
+            page.get("content").forEach(payment -> seenUserIds.add(payment.get("userId").asText()));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seenUserIds).hasSize(5);
+    }
+
+    @Test
+    void getPageByUserId_shouldReturnRequestedPage() throws Exception {
+
+        for (int i = 0; i < 3; i++) {
+            paymentRepository.save(Payment.builder()
+                    .eventId(UUID.randomUUID())
+                    .userId(userId)
+                    .amount(BigDecimal.valueOf(i))
+                    .status(PaymentStatus.PAID)
+                    .type(PaymentType.SINGLE)
+                    .build());
+        }
+
+        mockMvc.perform(get("/api/v1/payments/user/{userId}/page", userId)
+                        .param("page", "1")
+                        .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.page").value(1))
+                .andExpect(jsonPath("$.size").value(2))
+                .andExpect(jsonPath("$.hasNext").value(false))
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.content[0].userId").value(userId.toString()));
+    }
+
+    @Test
+    void getPaymentsByUserId_shouldBeCachedUntilUpsertForThatUser() throws Exception {
+
+        paymentRepository.save(Payment.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .amount(BigDecimal.ONE)
+                .status(PaymentStatus.PENDING)
+                .type(PaymentType.SINGLE)
+                .build());
+
+        mockMvc.perform(get("/api/v1/payments/user/{userId}", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+        mockMvc.perform(get("/api/v1/payments/{eventId}/{userId}", eventId, userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("PENDING"));
+
+        Cache byUser = cacheManager.getCache(CacheConfig.PAYMENTS_BY_USER);
+        Cache single = cacheManager.getCache(CacheConfig.PAYMENT);
+        assertThat(byUser.get(userId)).isNotNull();
+        assertThat(single.get(List.of(eventId, userId))).isNotNull();
+
+        PaymentRequest req = PaymentRequest.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .amount(BigDecimal.TEN)
+                .type(PaymentType.SINGLE)
+                .status(PaymentStatus.PAID)
+                .build();
+        mockMvc.perform(post("/api/v1/payments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(req)))
+                .andExpect(status().isCreated());
+
+        assertThat(byUser.get(userId)).isNull();
+        assertThat(single.get(List.of(eventId, userId))).isNull();
+        mockMvc.perform(get("/api/v1/payments/{eventId}/{userId}", eventId, userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("PAID"));
+
+        mockMvc.perform(get("/actuator/metrics/cache.gets").param("tag", "cache:" + CacheConfig.PAYMENT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("cache.gets"));
+    }
+
+    @Test
+    void postUpsertPayment_shouldPublishServiceRepositoryAndStatusMetricsToPrometheus() throws Exception {
+
+        PaymentRequest req = PaymentRequest.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .amount(BigDecimal.ONE)
+                .type(PaymentType.SINGLE)
+                .status(PaymentStatus.PAID)
+                .build();
+
+        mockMvc.perform(post("/api/v1/payments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(req)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("payment_service_seconds_count{")))
+                .andExpect(content().string(containsString("method=\"upsertPayment\"")))
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds_count{")))
+                .andExpect(content().string(containsString("payment_status_changes_total{operation=\"upsert\",status=\"PAID\"}")))
+                .andExpect(content().string(containsString("hikaricp_connections_acquire_seconds")))
+                .andExpect(content().string(containsString("hibernate_query_executions_total")));
+    }
+
+    @Test
+    void putUpdateStatus_whenPaymentDoesNotExist_shouldReturn404() throws Exception {
+
+        mockMvc.perform(put("/api/v1/payments/{eventId}/{userId}/status", eventId, userId))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value(
+                        "Payment for event [%s] and user [%s] does not exist".formatted(eventId, userId)));
+    }
+
+    @Test
+    void postUpsertPayment_whenPaymentExists_shouldIncrementVersion() throws Exception {
+
+        PaymentRequest req = PaymentRequest.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .amount(BigDecimal.ONE)
+                .type(PaymentType.SINGLE)
+                .status(PaymentStatus.PENDING)
+                .build();
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/v1/payments")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsBytes(req)))
+                    .andExpect(status().isCreated());
+        }
+
+        Payment persisted = paymentRepository.findByEventIdAndUserId(eventId, userId).orElseThrow();
+        assertThat(persisted.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void postTransition_shouldApplyOnlyFromAllowedStatuses() throws Exception {
+
+        paymentRepository.save(Payment.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .amount(BigDecimal.ONE)
+                .status(PaymentStatus.PENDING)
+                .type(PaymentType.SINGLE)
+                .build());
+
+        mockMvc.perform(post("/api/v1/payments/{eventId}/{userId}/transitions/{transition}", eventId, userId, "PAY"))
+                .andExpect(status().isNoContent());
+        assertThat(paymentRepository.findByEventIdAndUserId(eventId, userId).orElseThrow().getStatus())
+                .isEqualTo(PaymentStatus.PAID);
+
+        mockMvc.perform(post("/api/v1/payments/{eventId}/{userId}/transitions/{transition}", eventId, userId, "PAY"))
+                .andExpect(status().isConflict());
+
+        mockMvc.perform(post("/api/v1/payments/{eventId}/{userId}/transitions/{transition}", eventId, userId, "CANCEL"))
+                .andExpect(status().isNoContent());
+        Payment cancelled = paymentRepository.findByEventIdAndUserId(eventId, userId).orElseThrow();
+        assertThat(cancelled.getStatus()).isEqualTo(PaymentStatus.CANCELLED);
+        assertThat(cancelled.getVersion()).isEqualTo(2L);
+
+        mockMvc.perform(post("/api/v1/payments/{eventId}/{userId}/transitions/{transition}",
+                        eventId, UUID.randomUUID(), "CANCEL"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(post("/api/v1/payments/{eventId}/{userId}/transitions/{transition}", eventId, userId, "REFUND"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid transition: REFUND"));
+    }
+
+    @Test
+    void getSummary_shouldFollowUpsertsBatchesTogglesAndTransitions() throws Exception {
+
+        UUID otherUserId = UUID.randomUUID();
+        List<PaymentRequest> requests = List.of(
+                PaymentRequest.builder().eventId(eventId).userId(userId)
+                        .amount(BigDecimal.valueOf(10)).type(PaymentType.SINGLE).status(PaymentStatus.PENDING).build(),
+                PaymentRequest.builder().eventId(eventId).userId(otherUserId)
+                        .amount(BigDecimal.valueOf(20)).type(PaymentType.MONTHLY).status(PaymentStatus.PENDING).build());
+        mockMvc.perform(post("/api/v1/payments/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(requests)))
+                .andExpect(status().isOk());
+
+        // Moves 10 -> 15 within PENDING/SINGLE, then toggles it to PAID
+        mockMvc.perform(post("/api/v1/payments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(PaymentRequest.builder().eventId(eventId).userId(userId)
+                                .amount(BigDecimal.valueOf(15)).type(PaymentType.SINGLE).status(PaymentStatus.PENDING).build())))
+                .andExpect(status().isCreated());
+        mockMvc.perform(put("/api/v1/payments/{eventId}/{userId}/status", eventId, userId))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/v1/payments/{eventId}/{userId}/transitions/{transition}", eventId, otherUserId, "CANCEL"))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/v1/payments/event/{eventId}/summary", eventId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2))
+                .andExpect(jsonPath("$.amount").value(35.0))
+                .andExpect(jsonPath("$.byStatus.PAID.count").value(1))
+                .andExpect(jsonPath("$.byStatus.PAID.amount").value(15.0))
+                .andExpect(jsonPath("$.byStatus.CANCELLED.amount").value(20.0))
+                .andExpect(jsonPath("$.byStatus.PENDING.count").value(0))
+                .andExpect(jsonPath("$.byType.MONTHLY.count").value(1))
+                .andExpect(jsonPath("$.byType.SINGLE.amount").value(15.0));
+
+        mockMvc.perform(get("/api/v1/payments/user/{userId}/summary", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(1))
+                .andExpect(jsonPath("$.byStatus.PAID.amount").value(15.0));
+
+        mockMvc.perform(get("/api/v1/payments/event/{eventId}/summary", UUID.randomUUID()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(0))
+                .andExpect(jsonPath("$.byStatus.PAID.count").value(0));
+    }
+
+    @Test
+    void getChanges_shouldTailRelayedChangesBySequence() throws Exception {
+
+        mockMvc.perform(post("/api/v1/payments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(PaymentRequest.builder().eventId(eventId).userId(userId)
+                                .amount(BigDecimal.TEN).type(PaymentType.SINGLE).status(PaymentStatus.PENDING).build())))
+                .andExpect(status().isCreated());
+        mockMvc.perform(put("/api/v1/payments/{eventId}/{userId}/status", eventId, userId))
+                .andExpect(status().isOk());
+
+        // Nothing is in the feed until the relay has numbered the changes
+        mockMvc.perform(get("/api/v1/payments/changes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes.length()").value(0))
+                .andExpect(jsonPath("$.nextAfter").value(0));
+
+        assertThat(paymentChangeRelay.relay()).isEqualTo(2);
+        assertThat(applicationEvents.stream(PaymentChange.class))
+                .extracting(PaymentChange::getStatus)
+                .containsExactly(PaymentStatus.PENDING, PaymentStatus.PAID);
+
+        mockMvc.perform(get("/api/v1/payments/changes").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes.length()").value(1))
+                .andExpect(jsonPath("$.changes[0].changeType").value("CREATED"))
+                .andExpect(jsonPath("$.changes[0].sequence").value(1))
+                .andExpect(jsonPath("$.nextAfter").value(1))
+                .andExpect(jsonPath("$.hasNext").value(true));
+
+        mockMvc.perform(get("/api/v1/payments/changes").param("after", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes.length()").value(1))
+                .andExpect(jsonPath("$.changes[0].changeType").value("STATUS_CHANGED"))
+                .andExpect(jsonPath("$.changes[0].status").value("PAID"))
+                .andExpect(jsonPath("$.nextAfter").value(2))
+                .andExpect(jsonPath("$.hasNext").value(false));
+
+        // Published changes are not handed to the sinks again
+        assertThat(paymentChangeRelay.relay()).isZero();
+    }
+
+    @Test
+    void postUpsertPayment_withSameIdempotencyKey_shouldApplyOnceAndReplayResponse() throws Exception {
+        String key = UUID.randomUUID().toString();
+        PaymentRequest req = PaymentRequest.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .username("integrationUser")
+                .amount(BigDecimal.valueOf(15))
+                .type(PaymentType.SINGLE)
+                .status(PaymentStatus.PENDING)
+                .build();
+
+        mockMvc.perform(post("/api/v1/payments")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(req)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "false"))
+                .andExpect(jsonPath("$.amount").value(15));
+
+        mockMvc.perform(post("/api/v1/payments")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(req)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.eventId").value(eventId.toString()))
+                .andExpect(jsonPath("$.amount").value(15));
+
+        // The replay did not write: no second version and no second change
+        assertThat(paymentRepository.findByEventIdAndUserId(eventId, userId))
+                .get()
+                .extracting(Payment::getVersion)
+                .isEqualTo(0L);
+        assertThat(paymentChangeRepository.count()).isEqualTo(1);
+
+        req.setAmount(BigDecimal.valueOf(30));
+        mockMvc.perform(post("/api/v1/payments")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(req)))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void getPayments_afterArchiving_shouldListArchivedPaymentsOnlyOnRequest() throws Exception {
+        for (PaymentType type : PaymentType.values()) {
+            for (PaymentStatus status : List.of(PaymentStatus.PAID, PaymentStatus.CANCELLED)) {
+                mockMvc.perform(post("/api/v1/payments")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsBytes(PaymentRequest.builder().eventId(eventId)
+                                        .userId(UUID.randomUUID()).amount(BigDecimal.TEN).type(type).status(status).build())))
+                        .andExpect(status().isCreated());
+            }
+        }
+        mockMvc.perform(get("/api/v1/payments/event/{eventId}", eventId))
+                .andExpect(jsonPath("$.length()").value(4));
+
+        // Everything created so far is old enough; PAID MONTHLY payments are live subscriptions and stay
+        assertThat(paymentArchiver.archiveCreatedBefore(LocalDateTime.now().plusSeconds(1))).isEqualTo(3);
+
+        mockMvc.perform(get("/api/v1/payments/event/{eventId}", eventId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].type").value("MONTHLY"))
+                .andExpect(jsonPath("$[0].status").value("PAID"));
+        mockMvc.perform(get("/api/v1/payments/event/{eventId}", eventId).param("includeArchived", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4));
+        assertThat(paymentArchiveRepository.findViewsByEventId(eventId)).hasSize(3);
+        assertThat(paymentChangeRepository.findAll())
+                .filteredOn(change -> change.getChangeType() == PaymentChangeType.ARCHIVED)
+                .hasSize(3);
+    }
+
+    @Test
+    void postPayment_afterArchiving_shouldBeCountedAndListedOnce() throws Exception {
+        PaymentRequest request = PaymentRequest.builder().eventId(eventId).userId(userId)
+                .amount(BigDecimal.TEN).type(PaymentType.SINGLE).status(PaymentStatus.PAID).build();
+        mockMvc.perform(post("/api/v1/payments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(status().isCreated());
+        assertThat(paymentArchiver.archiveCreatedBefore(LocalDateTime.now().plusSeconds(1))).isEqualTo(1);
+
+        mockMvc.perform(get("/api/v1/payments/event/{eventId}/summary", eventId))
+                .andExpect(jsonPath("$.count").value(0));
+
+        request.setStatus(PaymentStatus.PENDING);
+        request.setAmount(BigDecimal.valueOf(15));
+        mockMvc.perform(post("/api/v1/payments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/api/v1/payments/event/{eventId}/summary", eventId))
+                .andExpect(jsonPath("$.count").value(1))
+                .andExpect(jsonPath("$.amount").value(15.0))
+                .andExpect(jsonPath("$.byStatus.PAID.count").value(0));
+        mockMvc.perform(get("/api/v1/payments/user/{userId}", userId).param("includeArchived", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].status").value("PENDING"));
+        assertThat(paymentArchiveRepository.findViewsByUserId(userId)).hasSize(1);
+    }
+
+    @Test
+    void postLookup_shouldReturnPaymentsGroupedByRequestedKey() throws Exception {
+        UUID otherUserId = UUID.randomUUID();
+        UUID unknownUserId = UUID.randomUUID();
+        for (UUID user : List.of(userId, otherUserId)) {
+            mockMvc.perform(post("/api/v1/payments")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsBytes(PaymentRequest.builder().eventId(eventId).userId(user)
+                                    .username("lookupUser").amount(BigDecimal.TEN).type(PaymentType.SINGLE)
+                                    .status(PaymentStatus.PENDING).build())))
+                    .andExpect(status().isCreated());
+        }
+
+        PaymentLookupRequest lookup = PaymentLookupRequest.builder()
+                .userIds(Set.of(userId, unknownUserId))
+                .eventIds(Set.of(eventId))
+                // The pair of another event with a user paying for this one must not match that user's payment
+                .payments(Set.of(new PaymentKey(eventId, otherUserId), new PaymentKey(eventId, unknownUserId),
+                        new PaymentKey(UUID.randomUUID(), userId)))
+                .build();
+
+        mockMvc.perform(post("/api/v1/payments/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(lookup)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.byUser['" + userId + "'].length()").value(1))
+                .andExpect(jsonPath("$.byUser['" + userId + "'][0].eventId").value(eventId.toString()))
+                .andExpect(jsonPath("$.byUser['" + unknownUserId + "'].length()").value(0))
+                .andExpect(jsonPath("$.byEvent['" + eventId + "'].length()").value(2))
+                .andExpect(jsonPath("$.payments.length()").value(1))
+                .andExpect(jsonPath("$.payments[0].userId").value(otherUserId.toString()));
+    }
+}
@@ -0,0 +1,267 @@
+package event.payment.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentType;
+import event.payment.service.PaymentService;
+import event.payment.web.dto.PaymentRequest;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Excluded from the default build, run with: mvn -Ploadtest test [-Dloadtest.duration=60s -Dloadtest.threads=16].
+// A run is compared with the committed baseline of the same test class and traffic shape; refresh it with
+// -Dloadtest.updateBaseline=true on the reference machine.
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class PaymentLoadTest {
+
+    private static final Duration WARM_UP = Duration.parse("PT" + System.getProperty("loadtest.warmup", "5s"));
+    private static final Duration DURATION = Duration.parse("PT" + System.getProperty("loadtest.duration", "20s"));
+    private static final int THREADS = Integer.getInteger("loadtest.threads", 8);
+    private static final int EVENTS = Integer.getInteger("loadtest.events", 20);
+    private static final int USERS_PER_EVENT = Integer.getInteger("loadtest.users", 100);
+    // Explicit thresholds replace the baseline comparison
+    private static final Long MAX_P99_MILLIS = Long.getLong("loadtest.maxP99Millis");
+    private static final Long MIN_THROUGHPUT = Long.getLong("loadtest.minThroughput");
+    // How much worse than the baseline p99 and throughput a run may be
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("loadtest.tolerance", "0.25"));
+    private static final Path BASELINE = Path.of(System.getProperty("loadtest.baseline", "benchmarks/loadtest-baseline.json"));
+    private static final boolean UPDATE_BASELINE = Boolean.getBoolean("loadtest.updateBaseline");
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final ExecutorService httpExecutor = Executors.newCachedThreadPool();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(httpExecutor)
+            .build();
+
+    private final List<UUID> eventIds = new ArrayList<>();
+    private final List<UUID> userIds = new ArrayList<>();
+
+    enum Operation { UPSERT, STATUS, LIST }
+
+    record Baseline(int threads, String duration, int events, int users, double p99Millis, double throughput) {
+
+        boolean sameShape(Baseline other) {
+            return threads == other.threads && duration.equals(other.duration)
+                    && events == other.events && users == other.users;
+        }
+    }
+
+    private record Run(Map<Operation, Histogram> histograms, long elapsedNanos) {
+    }
+
+    @BeforeEach
+    void setUp() {
+
+        IntStream.range(0, EVENTS).forEach(i -> eventIds.add(UUID.randomUUID()));
+        IntStream.range(0, USERS_PER_EVENT).forEach(i -> userIds.add(UUID.randomUUID()));
+
+        for (UUID eventId : eventIds) {
+            paymentService.upsertBatch(userIds.stream().map(userId -> request(eventId, userId)).toList());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        httpExecutor.shutdownNow();
+    }
+
+    @Test
+    void mixedTraffic_shouldStayWithinLatencyAndThroughputOfBaseline() throws Exception {
+
+        run(WARM_UP);
+        Run run = run(DURATION);
+
+        Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        run.histograms().values().forEach(total::add);
+        // Measured, not nominal: workers finish the request in flight at the deadline
+        double throughput = total.getTotalCount() / (run.elapsedNanos() / 1e9);
+        double p99Millis = total.getValueAtPercentile(99) / 1000.0;
+
+        System.out.printf("%nLoad test: %d threads, %s, %d events x %d users%n", THREADS, DURATION, EVENTS, USERS_PER_EVENT);
+        System.out.printf("%-8s %10s %10s %10s %10s %10s%n", "op", "count", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        run.histograms().forEach((operation, histogram) -> print(operation.name(), histogram));
+        print("TOTAL", total);
+        System.out.printf("Throughput: %.1f req/s over %.1f s%n%n", throughput, run.elapsedNanos() / 1e9);
+
+        assertThat(total.getTotalCount()).isPositive();
+
+        Baseline measured = new Baseline(THREADS, DURATION.toString(), EVENTS, USERS_PER_EVENT, p99Millis, throughput);
+        Map<String, Baseline> baselines = readBaselines();
+        if (UPDATE_BASELINE) {
+            baselines.put(getClass().getSimpleName(), measured);
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(BASELINE.toFile(), baselines);
+            return;
+        }
+
+        Baseline baseline = baselines.get(getClass().getSimpleName());
+        if (MAX_P99_MILLIS != null || MIN_THROUGHPUT != null) {
+            if (MAX_P99_MILLIS != null) {
+                assertThat(p99Millis).as("p99 ms").isLessThanOrEqualTo(MAX_P99_MILLIS);
+            }
+            if (MIN_THROUGHPUT != null) {
+                assertThat(throughput).as("req/s").isGreaterThanOrEqualTo(MIN_THROUGHPUT);
+            }
+        } else {
+            assertThat(baseline).as("baseline of %s in %s", getClass().getSimpleName(), BASELINE).isNotNull();
+            assertThat(measured.sameShape(baseline))
+                    .as("traffic shape matches the baseline %s; pass loadtest.maxP99Millis/minThroughput instead", baseline)
+                    .isTrue();
+            assertThat(p99Millis).as("p99 ms vs baseline %.2f", baseline.p99Millis())
+                    .isLessThanOrEqualTo(baseline.p99Millis() * (1 + TOLERANCE));
+            assertThat(throughput).as("req/s vs baseline %.1f", baseline.throughput())
+                    .isGreaterThanOrEqualTo(baseline.throughput() * (1 - TOLERANCE));
+        }
+    }
+
+    private Run run(Duration duration) throws Exception {
+
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        AtomicLong failures = new AtomicLong();
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+        Map<Operation, Histogram> merged = histograms();
+        try {
+            List<Future<Map<Operation, Histogram>>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(workers.submit(() -> drive(deadline, failures)));
+            }
+            for (Future<Map<Operation, Histogram>> result : results) {
+                result.get().forEach((operation, histogram) -> merged.get(operation).add(histogram));
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        assertThat(failures.get()).as("failed requests").isZero();
+        return new Run(merged, elapsedNanos);
+    }
+
+    private Map<String, Baseline> readBaselines() throws IOException {
+
+        if (!Files.exists(BASELINE)) {
+            return new TreeMap<>();
+        }
+        Map<String, Baseline> baselines = objectMapper.readValue(BASELINE.toFile(),
+                objectMapper.getTypeFactory().constructMapType(Map.class, String.class, Baseline.class));
+        return new TreeMap<>(baselines);
+    }
+
+    // Closed-loop worker: each thread sends its next request as soon as the previous one completes
+    private Map<Operation, Histogram> drive(long deadline, AtomicLong failures) throws Exception {
+
+        Map<Operation, Histogram> histograms = histograms();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (System.nanoTime() < deadline) {
+            UUID eventId = eventIds.get(random.nextInt(eventIds.size()));
+            UUID userId = userIds.get(random.nextInt(userIds.size()));
+            int roll = random.nextInt(100);
+
+            Operation operation = roll < 50 ? Operation.UPSERT : roll < 70 ? Operation.STATUS : Operation.LIST;
+            HttpRequest httpRequest = switch (operation) {
+                case UPSERT -> HttpRequest.newBuilder(uri("/api/v1/payments"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(request(eventId, userId))))
+                        .build();
+                case STATUS -> HttpRequest.newBuilder(uri("/api/v1/payments/" + eventId + "/" + userId + "/status"))
+                        .PUT(HttpRequest.BodyPublishers.noBody())
+                        .build();
+                case LIST -> HttpRequest.newBuilder(uri("/api/v1/payments/event/" + eventId)).GET().build();
+            };
+
+            long start = System.nanoTime();
+            HttpResponse<byte[]> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+
+            histograms.get(operation).recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+            // Concurrent toggles of the same payment may legitimately exhaust their retries and answer 409
+            if (response.statusCode() >= 400 && response.statusCode() != 409) {
+                failures.incrementAndGet();
+            }
+        }
+
+        return histograms;
+    }
+
+    private Map<Operation, Histogram> histograms() {
+
+        Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new Histogram(HIGHEST_TRACKABLE_MICROS, 3));
+        }
+        return histograms;
+    }
+
+    private void print(String name, Histogram histogram) {
+
+        System.out.printf("%-8s %10d %10.2f %10.2f %10.2f %10.2f%n",
+                name,
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private PaymentRequest request(UUID eventId, UUID userId) {
+
+        return PaymentRequest.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .username("loadUser")
+                .amount(BigDecimal.valueOf(ThreadLocalRandom.current().nextInt(1, 100)))
+                .type(PaymentType.SINGLE)
+                .status(PaymentStatus.PENDING)
+                .build();
+    }
+}
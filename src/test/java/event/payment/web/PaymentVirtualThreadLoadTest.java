@@ -0,0 +1,12 @@
+package event.payment.web;
+
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.test.context.ActiveProfiles;
+
+// Same traffic as PaymentLoadTest with Tomcat on virtual threads, compare with: mvn -Pjava21,loadtest test -Dloadtest.threads=1000
+// It has its own entry in the baseline file; record it on the reference machine with -Dloadtest.updateBaseline=true
+@EnabledForJreRange(min = JRE.JAVA_21)
+@ActiveProfiles("virtual")
+public class PaymentVirtualThreadLoadTest extends PaymentLoadTest {
+}
@@ -0,0 +1,287 @@
+package event.payment.web;
+
+import event.payment.config.ReadRouting;
+import event.payment.model.Payment;
+import event.payment.model.PaymentChange;
+import event.payment.model.PaymentChangeType;
+import event.payment.model.PaymentKey;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentType;
+import event.payment.repository.PaymentChangeRepository;
+import event.payment.repository.PaymentRepository;
+import event.payment.web.dto.PaymentPageResponse;
+import event.payment.web.dto.PaymentRequest;
+import event.payment.web.dto.PaymentResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+@AutoConfigureWebTestClient
+@ActiveProfiles({"reactive", "test"})
+public class ReactivePaymentITest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentChangeRepository paymentChangeRepository;
+
+    @MockitoSpyBean
+    private ReadRouting readRouting;
+
+    private UUID eventId;
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        paymentRepository.deleteAll();
+
+        eventId = UUID.randomUUID();
+        userId = UUID.randomUUID();
+    }
+
+    @Test
+    void postUpsertPayment_twiceForSameEventAndUser_shouldUpdateSingleRow() {
+
+        upsert(userId, BigDecimal.ONE, PaymentStatus.PENDING)
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.eventId").isEqualTo(eventId.toString())
+                .jsonPath("$.status").isEqualTo("PENDING");
+
+        upsert(userId, BigDecimal.TEN, PaymentStatus.PAID)
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.amount").isEqualTo(10)
+                .jsonPath("$.status").isEqualTo("PAID");
+
+        List<Payment> payments = paymentRepository.findAllByEventId(eventId);
+        assertThat(payments).hasSize(1);
+        assertThat(payments.get(0).getVersion()).isEqualTo(1L);
+
+        webTestClient.get().uri("/api/v1/payments/{eventId}/{userId}", eventId, userId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("PAID");
+
+        webTestClient.get().uri("/api/v1/payments/{eventId}/{userId}", eventId, UUID.randomUUID())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void postUpsertPayment_withoutAmount_shouldBindNull() {
+
+        upsert(userId, null, PaymentStatus.PENDING)
+                .expectStatus().isCreated();
+        upsert(userId, null, PaymentStatus.PAID)
+                .expectStatus().isCreated();
+
+        Payment payment = paymentRepository.findByEventIdAndUserId(eventId, userId).orElseThrow();
+        assertThat(payment.getAmount()).isNull();
+        assertThat(payment.getStatus()).isEqualTo(PaymentStatus.PAID);
+    }
+
+    @Test
+    void getExportByEventId_asNdjson_shouldStreamEveryPayment() {
+
+        for (int i = 0; i < 3; i++) {
+            upsert(UUID.randomUUID(), BigDecimal.valueOf(i), PaymentStatus.PENDING).expectStatus().isCreated();
+        }
+
+        Flux<PaymentResponse> payments = webTestClient.get().uri("/api/v1/payments/event/{eventId}/export", eventId)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(PaymentResponse.class)
+                .getResponseBody();
+
+        StepVerifier.create(payments)
+                .expectNextCount(3)
+                .verifyComplete();
+
+        webTestClient.get().uri("/api/v1/payments/event/{eventId}", eventId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3);
+    }
+
+    @Test
+    void putUpdateStatusAndTransitions_shouldFollowBlockingSemantics() {
+
+        upsert(userId, BigDecimal.ONE, PaymentStatus.PENDING).expectStatus().isCreated();
+
+        webTestClient.put().uri("/api/v1/payments/{eventId}/{userId}/status", eventId, userId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("PAID");
+
+        webTestClient.post().uri("/api/v1/payments/{eventId}/{userId}/transitions/PAY", eventId, userId)
+                .exchange()
+                .expectStatus().isEqualTo(409);
+
+        webTestClient.post().uri("/api/v1/payments/{eventId}/{userId}/transitions/CANCEL", eventId, userId)
+                .exchange()
+                .expectStatus().isNoContent();
+
+        // The upsert, the toggle and the cancel committed, so the blocking reads of the payment go to the primary
+        verify(readRouting, times(3)).written(List.of(new PaymentKey(eventId, userId)));
+
+        assertThat(paymentRepository.findByEventIdAndUserId(eventId, userId).orElseThrow().getStatus())
+                .isEqualTo(PaymentStatus.CANCELLED);
+
+        webTestClient.put().uri("/api/v1/payments/{eventId}/{userId}/status", eventId, UUID.randomUUID())
+                .exchange()
+                .expectStatus().isNotFound();
+
+        webTestClient.post().uri("/api/v1/payments/{eventId}/{userId}/transitions/PAY", eventId, UUID.randomUUID())
+                .exchange()
+                .expectStatus().isNotFound();
+
+        webTestClient.post().uri("/api/v1/payments/{eventId}/{userId}/transitions/REFUND", eventId, userId)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Invalid transition: REFUND");
+    }
+
+    @Test
+    void getScrollByEventId_shouldWalkAllPaymentsWithNextCursor() {
+
+        for (int i = 0; i < 5; i++) {
+            upsert(UUID.randomUUID(), BigDecimal.valueOf(i), PaymentStatus.PENDING).expectStatus().isCreated();
+        }
+
+        Set<UUID> seenUserIds = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            String after = cursor;
+            PaymentPageResponse page = webTestClient.get()
+                    .uri(builder -> builder.path("/api/v1/payments/event/{eventId}/scroll")
+                            .queryParam("size", 2)
+                            .queryParamIfPresent("cursor", Optional.ofNullable(after))
+                            .build(eventId))
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(PaymentPageResponse.class)
+                    .returnResult()
+                    .getResponseBody();
+
+            page.getContent().forEach(payment -> seenUserIds.add(payment.getUserId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seenUserIds).hasSize(5);
+
+        webTestClient.get().uri("/api/v1/payments/event/{eventId}/scroll?cursor=not-a-cursor", eventId)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Invalid cursor: not-a-cursor");
+    }
+
+    @Test
+    void postImportNdjson_shouldPersistEveryRowThroughBlockingImport() {
+
+        String ndjson = """
+                {"eventId":"%s","userId":"%s","username":"a","amount":10,"type":"SINGLE","status":"PENDING"}
+                {"eventId":"%s","userId":"%s","username":"b","amount":20,"type":"MONTHLY","status":"PAID"}
+                """.formatted(eventId, userId, eventId, UUID.randomUUID());
+
+        webTestClient.post().uri("/api/v1/payments/import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(ndjson)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.processed").isEqualTo(2)
+                .jsonPath("$.created").isEqualTo(2);
+
+        assertThat(paymentRepository.findAllByEventId(eventId)).hasSize(2);
+    }
+
+    @Test
+    void getSummary_shouldFollowReactiveUpsertsTogglesAndTransitions() {
+
+        UUID otherUserId = UUID.randomUUID();
+        upsert(userId, BigDecimal.valueOf(10), PaymentStatus.PENDING).expectStatus().isCreated();
+        upsert(userId, BigDecimal.valueOf(15), PaymentStatus.PENDING).expectStatus().isCreated();
+        upsert(otherUserId, BigDecimal.valueOf(20), PaymentStatus.PAID).expectStatus().isCreated();
+
+        webTestClient.put().uri("/api/v1/payments/{eventId}/{userId}/status", eventId, userId)
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.post().uri("/api/v1/payments/{eventId}/{userId}/transitions/CANCEL", eventId, otherUserId)
+                .exchange()
+                .expectStatus().isNoContent();
+
+        webTestClient.get().uri("/api/v1/payments/event/{eventId}/summary", eventId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(2)
+                .jsonPath("$.amount").isEqualTo(35.0)
+                .jsonPath("$.byStatus.PAID.amount").isEqualTo(15.0)
+                .jsonPath("$.byStatus.CANCELLED.count").isEqualTo(1)
+                .jsonPath("$.byStatus.PENDING.count").isEqualTo(0);
+
+        webTestClient.get().uri("/api/v1/payments/user/{userId}/summary", otherUserId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(1)
+                .jsonPath("$.byStatus.CANCELLED.amount").isEqualTo(20.0);
+
+        assertThat(paymentChangeRepository.findAll())
+                .filteredOn(change -> change.getEventId().equals(eventId))
+                .extracting(PaymentChange::getChangeType)
+                .containsExactlyInAnyOrder(PaymentChangeType.CREATED, PaymentChangeType.UPDATED,
+                        PaymentChangeType.CREATED, PaymentChangeType.STATUS_CHANGED, PaymentChangeType.STATUS_CHANGED);
+    }
+
+    private WebTestClient.ResponseSpec upsert(UUID userId, BigDecimal amount, PaymentStatus status) {
+
+        PaymentRequest request = PaymentRequest.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .username("reactiveUser")
+                .amount(amount)
+                .type(PaymentType.SINGLE)
+                .status(status)
+                .build();
+
+        return webTestClient.post().uri("/api/v1/payments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange();
+    }
+}
@@ -0,0 +1,211 @@
+package event.payment.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Ticker;
+import event.payment.model.PaymentStatus;
+import event.payment.model.PaymentType;
+import event.payment.repository.PaymentChangeRepository;
+import event.payment.repository.PaymentRepository;
+import event.payment.repository.PaymentSummaryRepository;
+import event.payment.web.dto.PaymentRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Two embedded H2 databases stand in for the primary and its replica; the test plays the replication,
+// copying the primary into the replica only when it says so. Not @Transactional: writes must commit.
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadReplicaITest.PRIMARY_URL,
+        "payment.replica.enabled=true",
+        "payment.replica.max-lag=2s",
+        "payment.replica.datasource.jdbc-url=" + ReadReplicaITest.REPLICA_URL,
+        "payment.replica.datasource.username=sa",
+        "payment.replica.datasource.password="
+})
+@AutoConfigureMockMvc(addFilters = false)
+@ActiveProfiles("test")
+public class ReadReplicaITest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:payment_primary;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:payment_replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentSummaryRepository paymentSummaryRepository;
+
+    @Autowired
+    private PaymentChangeRepository paymentChangeRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ManualTicker ticker;
+
+    private UUID eventId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        paymentRepository.deleteAll();
+        paymentSummaryRepository.deleteAll();
+        paymentChangeRepository.deleteAll();
+        replicate();
+
+        eventId = UUID.randomUUID();
+    }
+
+    @Test
+    void getByEvent_shouldReadOwnWritesFromPrimaryThenFollowTheReplica() throws Exception {
+
+        double primaryReads = reads("primary");
+        double replicaReads = reads("replica");
+        upsert();
+
+        // Within max-lag the event is read from the primary, although the replica has not caught up
+        mockMvc.perform(get("/api/v1/payments/event/{eventId}", eventId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+        assertThat(reads("primary") - primaryReads).isEqualTo(1);
+
+        // Past max-lag reads go to the replica, which still lacks the payment
+        ticker.advance(Duration.ofSeconds(3));
+        clearCaches();
+        mockMvc.perform(get("/api/v1/payments/event/{eventId}", eventId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+
+        replicate();
+        clearCaches();
+        mockMvc.perform(get("/api/v1/payments/event/{eventId}", eventId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].username").value("replicaUser"));
+        assertThat(reads("replica") - replicaReads).isEqualTo(2);
+    }
+
+    // The summary runs in the service's own read-only transaction, which the routing read joins
+    @Test
+    void getSummaryByEvent_shouldBeServedByTheReplicaOnceMaxLagHasPassed() throws Exception {
+
+        upsert();
+
+        mockMvc.perform(get("/api/v1/payments/event/{eventId}/summary", eventId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(1));
+
+        ticker.advance(Duration.ofSeconds(3));
+        double replicaReads = reads("replica");
+        mockMvc.perform(get("/api/v1/payments/event/{eventId}/summary", eventId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(0));
+        assertThat(reads("replica") - replicaReads).isEqualTo(1);
+
+        replicate();
+        mockMvc.perform(get("/api/v1/payments/event/{eventId}/summary", eventId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(1))
+                .andExpect(jsonPath("$.amount").value(10.0));
+    }
+
+    private void upsert() throws Exception {
+
+        PaymentRequest request = PaymentRequest.builder()
+                .eventId(eventId)
+                .userId(UUID.randomUUID())
+                .username("replicaUser")
+                .amount(BigDecimal.TEN)
+                .type(PaymentType.SINGLE)
+                .status(PaymentStatus.PENDING)
+                .build();
+        mockMvc.perform(post("/api/v1/payments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(status().isCreated());
+    }
+
+    private double reads(String target) {
+        return meterRegistry.counter("payment.replica.reads", "target", target).count();
+    }
+
+    // Copies the primary's schema and rows over the replica
+    private static void replicate() throws Exception {
+
+        Path script = Files.createTempFile("payment-replica", ".sql");
+        try (Connection primary = DriverManager.getConnection(PRIMARY_URL, "sa", "");
+             Statement statement = primary.createStatement()) {
+            statement.execute("SCRIPT DROP TO '" + script + "'");
+        }
+        try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             Statement statement = replica.createStatement()) {
+            statement.execute("RUNSCRIPT FROM '" + script + "'");
+        } finally {
+            Files.delete(script);
+        }
+    }
+
+    private void clearCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    // Moves the max-lag window forward without waiting for it
+    static class ManualTicker implements Ticker {
+
+        private final AtomicLong nanos = new AtomicLong(System.nanoTime());
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+
+        void advance(Duration duration) {
+            nanos.addAndGet(duration.toNanos());
+        }
+    }
+
+    @TestConfiguration
+    static class ManualTickerConfig {
+
+        @Bean
+        @Primary
+        ManualTicker manualTicker() {
+            return new ManualTicker();
+        }
+    }
+}